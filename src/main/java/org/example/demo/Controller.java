@@ -8,6 +8,7 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
 import javafx.util.Duration;
 
 import java.util.regex.Pattern;
@@ -37,12 +38,18 @@ public class Controller {
     private String viewingUser; // Currently viewing farm owner
     
     private ToggleButton[][] cells;
+    private FarmCanvas farmCanvas; // Used instead of cells for large boards
+    private LocalFarm localFarm; // Predicted state of my own farm
     private int selectedRow = -1;
     private int selectedCol = -1;
     private Timeline refreshTimeline;
 
     private static final int ROWS = 4;
     private static final int COLS = 4;
+    // Above this many plots, one ToggleButton per plot costs too much layout/CSS; draw on a Canvas instead
+    private static final int CANVAS_THRESHOLD = 400;
+    // -Dfarm.canvas=true uses the canvas renderer regardless of board size
+    private static final boolean FORCE_CANVAS = Boolean.getBoolean("farm.canvas");
     
     private String currentCoins = "0"; // Store coins locally to avoid overwrite by message
     private String currentStatus = "Ready.";
@@ -53,6 +60,7 @@ public class Controller {
         this.viewingUser = username;
         
         currentUserLabel.setText(username);
+        localFarm = new LocalFarm(ROWS, COLS);
         
         createBoard();
         setupNetworkCallbacks();
@@ -67,10 +75,28 @@ public class Controller {
         client.setOnStateReceived(this::updateBoardFromState);
         client.setOnMessageReceived(this::updateStatus);
         client.setOnConnectionLost(this::handleConnectionLost);
+        client.setOnResponse(this::handleResponse);
+        client.setOnReconnected(this::handleReconnected);
+    }
+
+    // Reconcile a prediction with the server's answer to it
+    private void handleResponse(int requestId, String response) {
+        if (response.startsWith("SUCCESS")) {
+            localFarm.confirm(requestId);
+        } else {
+            localFarm.rollback(requestId);
+        }
+        if (isMyFarm()) {
+            renderLocalFarm();
+        }
     }
     
     private void handleConnectionLost() {
-        updateStatus("CONNECTION LOST!");
+        localFarm.rollbackAll();
+        if (isMyFarm()) {
+            renderLocalFarm();
+        }
+        updateStatus("CONNECTION LOST! Reconnecting automatically...");
         plantButton.setDisable(true);
         harvestButton.setDisable(true);
         stealButton.setDisable(true);
@@ -84,17 +110,11 @@ public class Controller {
         
         new Thread(() -> {
             try {
-                client.connect(client.getHost(), client.getPort());
-                // Re-login
-                client.sendLogin(myUsername);
-                // Re-query
-                client.sendQuery(viewingUser);
+                // Resume the session (or re-login if the server forgot it)
+                client.reconnect();
                 
                 // Back to UI thread to update
-                javafx.application.Platform.runLater(() -> {
-                    updateStatus("Reconnected successfully!");
-                    updateButtonStates();
-                });
+                javafx.application.Platform.runLater(this::handleReconnected);
             } catch (Exception e) {
                 javafx.application.Platform.runLater(() -> {
                     updateStatus("Reconnect failed: " + e.getMessage());
@@ -104,11 +124,25 @@ public class Controller {
         }).start();
     }
     
+    private void handleReconnected() {
+        // RESUME already resends my farm if it changed; a friend's farm needs a fresh query
+        if (!isMyFarm()) {
+            client.sendQuery(viewingUser);
+        }
+        reconnectButton.setDisable(true);
+        updateStatus("Reconnected successfully!");
+        updateButtonStates();
+    }
+
     private void startAutoRefresh() {
         refreshTimeline = new Timeline(new KeyFrame(Duration.seconds(1), event -> {
             if (client != null && client.isConnected() && viewingUser != null) {
                  client.sendQuery(viewingUser);
             }
+            // Tick the local ripening countdown between polls
+            if (isMyFarm()) {
+                renderLocalFarm();
+            }
         }));
         refreshTimeline.setCycleCount(Timeline.INDEFINITE);
         refreshTimeline.play();
@@ -116,6 +150,18 @@ public class Controller {
 
     private void createBoard() {
         gameBoard.getChildren().clear();
+        if (FORCE_CANVAS || ROWS * COLS > CANVAS_THRESHOLD) {
+            farmCanvas = new FarmCanvas(ROWS, COLS);
+            farmCanvas.setOnCellSelected((r, c) -> {
+                selectedRow = r;
+                selectedCol = c;
+                updateStatus("Selected (" + r + "," + c + ")");
+            });
+            GridPane.setHgrow(farmCanvas, Priority.ALWAYS);
+            GridPane.setVgrow(farmCanvas, Priority.ALWAYS);
+            gameBoard.add(farmCanvas, 0, 0);
+            return;
+        }
         cells = new ToggleButton[ROWS][COLS];
         for (int row = 0; row < ROWS; row++) {
             for (int col = 0; col < COLS; col++) {
@@ -137,6 +183,10 @@ public class Controller {
     }
 
     private void refreshSelection() {
+        if (farmCanvas != null) {
+            farmCanvas.setSelected(selectedRow, selectedCol);
+            return;
+        }
         for (int row = 0; row < ROWS; row++) {
             for (int col = 0; col < COLS; col++) {
                 cells[row][col].setSelected(row == selectedRow && col == selectedCol);
@@ -145,8 +195,20 @@ public class Controller {
     }
 
     // State Format: COINS|STATE:YIELD,STATE:YIELD...
-    private void updateBoardFromState(String stateStr) {
+    // owner is the user whose farm was queried, not necessarily the one on screen
+    private void updateBoardFromState(String owner, String stateStr) {
         try {
+            if (owner.equals(myUsername)) {
+                localFarm.applyState(stateStr);
+                client.setLastVersion(localFarm.getVersion());
+                if (isMyFarm()) {
+                    renderLocalFarm();
+                }
+                return;
+            }
+            if (!owner.equals(viewingUser)) {
+                return; // answer to a query for a farm we have since left
+            }
             String[] parts = stateStr.split(Pattern.quote("|"));
             this.currentCoins = parts[0];
             String[] plots = parts[1].split(",");
@@ -157,7 +219,11 @@ public class Controller {
             for (int row = 0; row < ROWS; row++) {
                 for (int col = 0; col < COLS; col++) {
                     if (idx < plots.length) {
-                        updateCell(cells[row][col], plots[idx]);
+                        if (farmCanvas != null) {
+                            updateCanvasCell(row, col, plots[idx]);
+                        } else {
+                            updateCell(cells[row][col], plots[idx]);
+                        }
                     }
                     idx++;
                 }
@@ -168,17 +234,38 @@ public class Controller {
         }
     }
 
+    private void renderLocalFarm() {
+        this.currentCoins = String.valueOf(localFarm.getCoins());
+        refreshInfoLabel();
+
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                Game.PlotState state = localFarm.getState(row, col);
+                int yield = localFarm.getYield(row, col);
+                int secondsLeft = localFarm.getSecondsLeft(row, col);
+                if (farmCanvas != null) {
+                    farmCanvas.setCell(row, col, state, yield, secondsLeft);
+                } else {
+                    updateCell(cells[row][col], state.name(), yield, secondsLeft);
+                }
+            }
+        }
+    }
+
     private void updateCell(ToggleButton cell, String plotData) {
         // plotData format: STATE:YIELD
         String[] info = plotData.split(":");
         String state = info[0];
         int yield = info.length > 1 ? Integer.parseInt(info[1]) : 0;
+        updateCell(cell, state, yield, -1);
+    }
 
+    private void updateCell(ToggleButton cell, String state, int yield, int secondsLeft) {
         cell.getStyleClass().removeAll("state-empty", "state-growing", "state-ripe");
         
         String text = switch (state) {
             case "EMPTY" -> "Empty";
-            case "GROWING" -> "Growing";
+            case "GROWING" -> secondsLeft >= 0 ? "Growing\n(" + secondsLeft + "s)" : "Growing";
             case "RIPE" -> "Ripe\n(" + (yield * 25) + "%)";
             default -> state;
         };
@@ -192,6 +279,14 @@ public class Controller {
         }
     }
 
+    private void updateCanvasCell(int row, int col, String plotData) {
+        // plotData format: STATE:YIELD
+        int sep = plotData.indexOf(':');
+        String state = sep < 0 ? plotData : plotData.substring(0, sep);
+        int yield = sep < 0 ? 0 : Integer.parseInt(plotData, sep + 1, plotData.length(), 10);
+        farmCanvas.setCell(row, col, Game.PlotState.valueOf(state), yield, -1);
+    }
+
     private void updateStatus(String message) {
         this.currentStatus = message;
         refreshInfoLabel();
@@ -208,8 +303,15 @@ public class Controller {
             updateStatus("Can only plant on your own farm!");
             return;
         }
-        client.sendPlant(selectedRow, selectedCol);
-        updateStatus("Planting..."); 
+        if (!client.isConnected()) {
+            updateStatus("Not connected.");
+            return;
+        }
+        int requestId = client.sendPlant(selectedRow, selectedCol);
+        if (localFarm.predictPlant(requestId, selectedRow, selectedCol)) {
+            renderLocalFarm();
+        }
+        updateStatus("Planting...");
     }
 
     @FXML
@@ -219,7 +321,14 @@ public class Controller {
             updateStatus("Can only harvest your own farm!");
             return;
         }
-        client.sendHarvest(selectedRow, selectedCol);
+        if (!client.isConnected()) {
+            updateStatus("Not connected.");
+            return;
+        }
+        int requestId = client.sendHarvest(selectedRow, selectedCol);
+        if (localFarm.predictHarvest(requestId, selectedRow, selectedCol)) {
+            renderLocalFarm();
+        }
         updateStatus("Harvesting...");
     }
 
@@ -248,6 +357,7 @@ public class Controller {
     @FXML
     private void handleBackHome() {
         viewingUser = myUsername;
+        renderLocalFarm();
         client.sendQuery(myUsername);
         updateButtonStates();
         updateStatus("Back home");
@@ -276,6 +386,9 @@ public class Controller {
         if (refreshTimeline != null) {
             refreshTimeline.stop();
         }
+        if (farmCanvas != null) {
+            farmCanvas.stop();
+        }
         if (client != null) {
             client.close();
         }
@@ -0,0 +1,236 @@
+package org.example.demo;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+import java.util.BitSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Canvas-based farm renderer for large boards.
+ * The canvas is only as big as the viewport: only visible plots are painted,
+ * clicks are hit-tested against the plot grid, and a state change repaints
+ * just the plot that changed on the next animation pulse.
+ */
+public class FarmCanvas extends Region {
+
+    private static final double CELL_SIZE = 60;
+    private static final double GAP = 5;
+    private static final double PITCH = CELL_SIZE + GAP;
+    private static final double ARC = 8;
+    private static final double MAX_PREF_SIZE = 600;
+
+    private static final Color EMPTY_FILL = Color.web("#c9bab5");
+    private static final Color GROWING_FILL = Color.web("#b6dfb8");
+    private static final Color RIPE_FILL = Color.web("#ffdb69");
+    private static final Color EMPTY_TEXT = Color.web("#4e342e");
+    private static final Color GROWING_TEXT = Color.web("#1b5e20");
+    private static final Color BORDER = Color.rgb(0, 0, 0, 0.15);
+    private static final Color SELECTED_BORDER = Color.web("#1976d2");
+    private static final Font CELL_FONT = Font.font(null, FontWeight.SEMI_BOLD, 12);
+
+    private final Canvas canvas = new Canvas();
+    private final int rows;
+    private final int cols;
+    private final Game.PlotState[] states;
+    private final int[] yields;
+    private final int[] secondsLeft; // ripening countdown for GROWING plots, -1 if unknown
+
+    // Plots changed since the last pulse; ignored when a full repaint is pending
+    private final BitSet dirty;
+    private boolean fullRepaint = true;
+
+    private double scrollX;
+    private double scrollY;
+    private int selectedIndex = -1;
+    private BiConsumer<Integer, Integer> onCellSelected;
+
+    private final AnimationTimer painter = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            paint();
+        }
+    };
+
+    public FarmCanvas(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.states = new Game.PlotState[rows * cols];
+        this.yields = new int[rows * cols];
+        this.secondsLeft = new int[rows * cols];
+        this.dirty = new BitSet(rows * cols);
+        for (int i = 0; i < states.length; i++) {
+            states[i] = Game.PlotState.EMPTY;
+            secondsLeft[i] = -1;
+        }
+
+        getChildren().add(canvas);
+        getStyleClass().add("farm-canvas");
+        canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, this::handleClick);
+        addEventHandler(ScrollEvent.SCROLL, this::handleScroll);
+        painter.start();
+    }
+
+    public void setOnCellSelected(BiConsumer<Integer, Integer> onCellSelected) {
+        this.onCellSelected = onCellSelected;
+    }
+
+    // secondsLeft is the ripening countdown shown on GROWING plots, or -1 to show none
+    public void setCell(int row, int col, Game.PlotState state, int yield, int secondsLeft) {
+        int idx = row * cols + col;
+        if (states[idx] != state || yields[idx] != yield || this.secondsLeft[idx] != secondsLeft) {
+            states[idx] = state;
+            yields[idx] = yield;
+            this.secondsLeft[idx] = secondsLeft;
+            dirty.set(idx);
+        }
+    }
+
+    public void setSelected(int row, int col) {
+        int idx = (row < 0 || col < 0) ? -1 : row * cols + col;
+        if (idx == selectedIndex) return;
+        if (selectedIndex >= 0) dirty.set(selectedIndex);
+        if (idx >= 0) dirty.set(idx);
+        selectedIndex = idx;
+    }
+
+    public void stop() {
+        painter.stop();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            clampScroll();
+            fullRepaint = true;
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return Math.min(cols * PITCH - GAP, MAX_PREF_SIZE);
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return Math.min(rows * PITCH - GAP, MAX_PREF_SIZE);
+    }
+
+    private void handleClick(MouseEvent event) {
+        double x = event.getX() + scrollX;
+        double y = event.getY() + scrollY;
+        int col = (int) (x / PITCH);
+        int row = (int) (y / PITCH);
+        // Clicks on the gap between plots select nothing
+        if (row >= rows || col >= cols || x - col * PITCH > CELL_SIZE || y - row * PITCH > CELL_SIZE) {
+            return;
+        }
+        setSelected(row, col);
+        if (onCellSelected != null) {
+            onCellSelected.accept(row, col);
+        }
+    }
+
+    private void handleScroll(ScrollEvent event) {
+        scrollX -= event.getDeltaX();
+        scrollY -= event.getDeltaY();
+        clampScroll();
+        fullRepaint = true;
+        event.consume();
+    }
+
+    private void clampScroll() {
+        double maxX = Math.max(0, cols * PITCH - GAP - canvas.getWidth());
+        double maxY = Math.max(0, rows * PITCH - GAP - canvas.getHeight());
+        scrollX = Math.max(0, Math.min(scrollX, maxX));
+        scrollY = Math.max(0, Math.min(scrollY, maxY));
+    }
+
+    private void paint() {
+        if (!fullRepaint && dirty.isEmpty()) return;
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(CELL_FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+
+        int firstRow = (int) (scrollY / PITCH);
+        int firstCol = (int) (scrollX / PITCH);
+        int lastRow = Math.min(rows - 1, (int) ((scrollY + canvas.getHeight()) / PITCH));
+        int lastCol = Math.min(cols - 1, (int) ((scrollX + canvas.getWidth()) / PITCH));
+
+        if (fullRepaint) {
+            gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    paintCell(gc, row, col);
+                }
+            }
+            fullRepaint = false;
+        } else {
+            for (int idx = dirty.nextSetBit(0); idx >= 0; idx = dirty.nextSetBit(idx + 1)) {
+                int row = idx / cols;
+                int col = idx % cols;
+                // Off-screen plots are picked up by the next full repaint after scrolling
+                if (row < firstRow || row > lastRow || col < firstCol || col > lastCol) continue;
+                double x = col * PITCH - scrollX;
+                double y = row * PITCH - scrollY;
+                gc.clearRect(x - 1, y - 1, CELL_SIZE + 2, CELL_SIZE + 2);
+                paintCell(gc, row, col);
+            }
+        }
+        dirty.clear();
+    }
+
+    private void paintCell(GraphicsContext gc, int row, int col) {
+        int idx = row * cols + col;
+        double x = col * PITCH - scrollX;
+        double y = row * PITCH - scrollY;
+        Game.PlotState state = states[idx];
+
+        Color fill;
+        Color textFill;
+        String text;
+        switch (state) {
+            case GROWING -> {
+                fill = GROWING_FILL;
+                textFill = GROWING_TEXT;
+                text = secondsLeft[idx] >= 0 ? "Growing\n(" + secondsLeft[idx] + "s)" : "Growing";
+            }
+            case RIPE -> {
+                fill = RIPE_FILL;
+                textFill = EMPTY_TEXT;
+                text = "Ripe\n(" + (yields[idx] * 25) + "%)";
+            }
+            default -> {
+                fill = EMPTY_FILL;
+                textFill = EMPTY_TEXT;
+                text = "Empty";
+            }
+        }
+
+        gc.setFill(fill);
+        gc.fillRoundRect(x, y, CELL_SIZE, CELL_SIZE, ARC, ARC);
+
+        boolean selected = idx == selectedIndex;
+        gc.setStroke(selected ? SELECTED_BORDER : BORDER);
+        gc.setLineWidth(selected ? 2 : 1);
+        gc.strokeRoundRect(x + 0.5, y + 0.5, CELL_SIZE - 1, CELL_SIZE - 1, ARC, ARC);
+
+        gc.setFill(textFill);
+        gc.fillText(text, x + CELL_SIZE / 2, y + CELL_SIZE / 2);
+    }
+}
@@ -1,5 +1,8 @@
 package org.example.demo;
 
+import org.example.demo.monitoring.CropGrowthEvent;
+import org.example.demo.monitoring.FarmLockEvent;
+
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -11,9 +14,10 @@ public class Game {
 
     private static final int ROWS = 4;
     private static final int COLS = 4;
-    private static final int PLANT_COST = 5;
-    private static final int MAX_YIELD = 4; // 4 units = 100%
-    private static final int UNIT_REWARD = 3; // 4 units * 3 = 12 total
+    static final int PLANT_COST = 5;
+    static final int MAX_YIELD = 4; // 4 units = 100%
+    static final int UNIT_REWARD = 3; // 4 units * 3 = 12 total
+    static final int GROW_SECONDS = 10;
     private static final int STEAL_REWARD = 3; // 25% of total (12) is 3
 
     private final PlotState[][] board = new PlotState[ROWS][COLS];
@@ -26,9 +30,17 @@ public class Game {
         return thread;
     });
 
+    private final String owner; // Player name; server-side farms only
     private int coins = 40;
+    // Bumped on every change so a resuming client can tell whether it missed anything
+    private long version = 0;
 
     public Game() {
+        this(null);
+    }
+
+    public Game(String owner) {
+        this.owner = owner;
         for (int r = 0; r < ROWS; r++) {
             for (int c = 0; c < COLS; c++) {
                 board[r][c] = PlotState.EMPTY;
@@ -41,63 +53,133 @@ public class Game {
         return coins;
     }
 
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // Username of the player this farm belongs to, or null for a client-side farm
+    public String getOwner() {
+        return owner;
+    }
+
     public synchronized PlotState getState(int row, int col) {
         return board[row][col];
     }
 
-    public synchronized void plant(int row, int col) {
-        if (board[row][col] != PlotState.EMPTY) {
-            throw new IllegalStateException("Plot occupied");
-        }
-        if (coins < PLANT_COST) {
-            throw new IllegalStateException("Not enough coins");
+    // Mutating operations time their wait for and hold of the monitor (FarmLockEvent, JFR)
+    public void plant(int row, int col) {
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
+                if (board[row][col] != PlotState.EMPTY) {
+                    throw new IllegalStateException("Plot occupied");
+                }
+                if (coins < PLANT_COST) {
+                    throw new IllegalStateException("Not enough coins");
+                }
+                coins -= PLANT_COST;
+                board[row][col] = PlotState.GROWING;
+                cropYield[row][col] = 0;
+                version++;
+            } finally {
+                lock.released(owner, "plant");
+            }
         }
-        coins -= PLANT_COST;
-        board[row][col] = PlotState.GROWING;
-        cropYield[row][col] = 0;
 
         // Simulate growth finishing after 10 seconds (as per requirements)
-        scheduler.schedule(() -> {
-            synchronized (Game.this) {
+        long ripenAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(GROW_SECONDS);
+        scheduler.schedule(() -> ripen(row, col, ripenAt), GROW_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void ripen(int row, int col, long intendedNanos) {
+        CropGrowthEvent growth = new CropGrowthEvent();
+        if (growth.shouldCommit()) {
+            growth.farm = owner;
+            growth.row = row;
+            growth.col = col;
+            growth.lag = System.nanoTime() - intendedNanos;
+            growth.commit();
+        }
+
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
                 if (board[row][col] == PlotState.GROWING) {
                     board[row][col] = PlotState.RIPE;
                     cropYield[row][col] = MAX_YIELD; // Set to 100% yield
+                    version++;
                 }
+            } finally {
+                lock.released(owner, "ripen");
             }
-        }, 10, TimeUnit.SECONDS);
+        }
     }
 
-    public synchronized int harvest(int row, int col) {
-        if (board[row][col] != PlotState.RIPE) {
-            throw new IllegalStateException("Crop not ripe");
+    public int harvest(int row, int col) {
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
+                if (board[row][col] != PlotState.RIPE) {
+                    throw new IllegalStateException("Crop not ripe");
+                }
+                int yield = cropYield[row][col];
+                int reward = yield * UNIT_REWARD;
+
+                board[row][col] = PlotState.EMPTY;
+                cropYield[row][col] = 0;
+                coins += reward;
+                version++;
+                return reward;
+            } finally {
+                lock.released(owner, "harvest");
+            }
         }
-        int yield = cropYield[row][col];
-        int reward = yield * UNIT_REWARD;
-        
-        board[row][col] = PlotState.EMPTY;
-        cropYield[row][col] = 0;
-        coins += reward;
-        return reward;
     }
 
 
-    public synchronized int steal(int row, int col) {
-        if (board[row][col] != PlotState.RIPE) {
-            return 0; // Can only steal ripe crops
-        }
-        if (cropYield[row][col] <= 1) {
-             return 0; // Too little yield left to steal (e.g. < 25%)? Or maybe allow until 0?
-             // Requirement: "atomic update prevents over-stealing".
-             // Let's say we need at least 1 unit to steal. 
-        }
-        
-        // Thief takes 1 unit (25%)
-        cropYield[row][col] -= 1;
-        return STEAL_REWARD;
+    public int steal(int row, int col) {
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
+                if (board[row][col] != PlotState.RIPE) {
+                    return 0; // Can only steal ripe crops
+                }
+                if (cropYield[row][col] <= 1) {
+                     return 0; // Too little yield left to steal (e.g. < 25%)? Or maybe allow until 0?
+                     // Requirement: "atomic update prevents over-stealing".
+                     // Let's say we need at least 1 unit to steal.
+                }
+
+                // Thief takes 1 unit (25%)
+                cropYield[row][col] -= 1;
+                version++;
+                return STEAL_REWARD;
+            } finally {
+                lock.released(owner, "steal");
+            }
         }
+    }
 
-    public synchronized void addCoins(int amount) {
-        coins += amount;
+    public void addCoins(int amount) {
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
+                coins += amount;
+                version++;
+            } finally {
+                lock.released(owner, "addCoins");
+            }
+        }
     }
 
     public int getRows() {
@@ -108,17 +190,31 @@ public class Game {
         return COLS;
     }
 
-    // Serialize state for network transmission
-    // Format: COINS|R0C0_STATE:YIELD,R0C1_STATE:YIELD...
-    public synchronized String serialize() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(coins).append("|");
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                sb.append(board[r][c]).append(":").append(cropYield[r][c]);
-                if (c < COLS - 1 || r < ROWS - 1) sb.append(",");
+    // Reusable copy of a farm's state, filled by snapshot() without allocating
+    public static class Snapshot {
+        public final PlotState[] states = new PlotState[ROWS * COLS];
+        public final int[] yields = new int[ROWS * COLS];
+        public int coins;
+        public long version;
+    }
+
+    public void snapshot(Snapshot into) {
+        FarmLockEvent lock = new FarmLockEvent();
+        lock.requested();
+        synchronized (this) {
+            lock.acquired();
+            try {
+                for (int r = 0; r < ROWS; r++) {
+                    for (int c = 0; c < COLS; c++) {
+                        into.states[r * COLS + c] = board[r][c];
+                        into.yields[r * COLS + c] = cropYield[r][c];
+                    }
+                }
+                into.coins = coins;
+                into.version = version;
+            } finally {
+                lock.released(owner, "snapshot");
             }
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,185 @@
+package org.example.demo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side prediction of the player's own farm.
+ * PLANT/HARVEST are applied immediately as pending predictions on top of the
+ * last authoritative state from the server. A SUCCESS response folds the
+ * prediction into that state, an ERROR response rolls it back, and every
+ * STATE message replaces it and re-applies whatever is still pending.
+ * Only accessed from the JavaFX thread.
+ */
+public class LocalFarm {
+
+    private enum Op {PLANT, HARVEST}
+
+    private record Prediction(Op op, int row, int col) {}
+
+    private final int cols;
+
+    // Last STATE from the server plus predictions it has since confirmed
+    private int baseCoins;
+    private final Game.PlotState[] baseStates;
+    private final int[] baseYields;
+    private long version = -1; // Game version of the last STATE, -1 if none yet
+
+    // What the player sees: base state with pending predictions applied
+    private int coins;
+    private final Game.PlotState[] states;
+    private final int[] yields;
+
+    // Local time a plot was planted, for the ripening countdown (0 = unknown)
+    private final long[] plantedAt;
+    private final Map<Integer, Prediction> pending = new LinkedHashMap<>();
+
+    public LocalFarm(int rows, int cols) {
+        this.cols = cols;
+        this.baseStates = new Game.PlotState[rows * cols];
+        this.baseYields = new int[rows * cols];
+        this.states = new Game.PlotState[rows * cols];
+        this.yields = new int[rows * cols];
+        this.plantedAt = new long[rows * cols];
+        for (int i = 0; i < baseStates.length; i++) {
+            baseStates[i] = Game.PlotState.EMPTY;
+        }
+        rebuild();
+    }
+
+    // State Format: COINS|STATE:YIELD,STATE:YIELD...|VERSION
+    public void applyState(String stateStr) {
+        String[] parts = stateStr.split(Pattern.quote("|"));
+        String[] plots = parts[1].split(",");
+        baseCoins = Integer.parseInt(parts[0]);
+        if (parts.length > 2) {
+            version = Long.parseLong(parts[2]);
+        }
+        for (int i = 0; i < baseStates.length && i < plots.length; i++) {
+            String[] info = plots[i].split(":");
+            baseStates[i] = Game.PlotState.valueOf(info[0]);
+            baseYields[i] = info.length > 1 ? Integer.parseInt(info[1]) : 0;
+        }
+        rebuild();
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != Game.PlotState.GROWING) {
+                plantedAt[i] = 0;
+            }
+        }
+    }
+
+    /** Predicts a PLANT; returns false (and predicts nothing) if the local model says it would fail. */
+    public boolean predictPlant(int requestId, int row, int col) {
+        int idx = row * cols + col;
+        if (states[idx] != Game.PlotState.EMPTY || coins < Game.PLANT_COST) {
+            return false;
+        }
+        pending.put(requestId, new Prediction(Op.PLANT, row, col));
+        plantedAt[idx] = System.currentTimeMillis();
+        rebuild();
+        return true;
+    }
+
+    /** Predicts a HARVEST; returns false (and predicts nothing) if the local model says it would fail. */
+    public boolean predictHarvest(int requestId, int row, int col) {
+        if (states[row * cols + col] != Game.PlotState.RIPE) {
+            return false;
+        }
+        pending.put(requestId, new Prediction(Op.HARVEST, row, col));
+        rebuild();
+        return true;
+    }
+
+    /** Server accepted the request: keep its effect until the next STATE supersedes it. */
+    public void confirm(int requestId) {
+        Prediction p = pending.remove(requestId);
+        if (p != null) {
+            baseCoins = apply(p, baseStates, baseYields, baseCoins);
+            rebuild();
+        }
+    }
+
+    /** Server rejected the request: undo its effect. */
+    public void rollback(int requestId) {
+        Prediction p = pending.remove(requestId);
+        if (p != null) {
+            if (p.op == Op.PLANT) {
+                plantedAt[p.row * cols + p.col] = 0;
+            }
+            rebuild();
+        }
+    }
+
+    /** Drops every unanswered prediction, e.g. when the connection is lost. */
+    public void rollbackAll() {
+        Iterator<Map.Entry<Integer, Prediction>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Prediction p = it.next().getValue();
+            if (p.op == Op.PLANT) {
+                plantedAt[p.row * cols + p.col] = 0;
+            }
+            it.remove();
+        }
+        rebuild();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getCoins() {
+        return coins;
+    }
+
+    public Game.PlotState getState(int row, int col) {
+        return states[row * cols + col];
+    }
+
+    public int getYield(int row, int col) {
+        return yields[row * cols + col];
+    }
+
+    /** Seconds until a growing plot should ripen, or -1 if unknown. */
+    public int getSecondsLeft(int row, int col) {
+        int idx = row * cols + col;
+        if (states[idx] != Game.PlotState.GROWING || plantedAt[idx] == 0) {
+            return -1;
+        }
+        long left = plantedAt[idx] + Game.GROW_SECONDS * 1000L - System.currentTimeMillis();
+        return (int) Math.max(0, (left + 999) / 1000);
+    }
+
+    private void rebuild() {
+        System.arraycopy(baseStates, 0, states, 0, states.length);
+        System.arraycopy(baseYields, 0, yields, 0, yields.length);
+        coins = baseCoins;
+        for (Prediction p : pending.values()) {
+            coins = apply(p, states, yields, coins);
+        }
+    }
+
+    // Mirrors Game.plant/Game.harvest; returns the new coin balance
+    private int apply(Prediction p, Game.PlotState[] states, int[] yields, int coins) {
+        int idx = p.row * cols + p.col;
+        switch (p.op) {
+            case PLANT -> {
+                if (states[idx] != Game.PlotState.EMPTY) return coins;
+                states[idx] = Game.PlotState.GROWING;
+                yields[idx] = 0;
+                return coins - Game.PLANT_COST;
+            }
+            case HARVEST -> {
+                if (states[idx] != Game.PlotState.RIPE) return coins;
+                int reward = yields[idx] * Game.UNIT_REWARD;
+                states[idx] = Game.PlotState.EMPTY;
+                yields[idx] = 0;
+                return coins + reward;
+            }
+            default -> {
+                return coins;
+            }
+        }
+    }
+}
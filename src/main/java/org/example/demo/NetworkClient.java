@@ -6,48 +6,114 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class NetworkClient {
-    private Socket socket;
-    private PrintWriter out;
+    private volatile Socket socket;
+    private volatile PrintWriter out;
     private BufferedReader in;
     private volatile boolean running = false;
+    private volatile boolean closed = false; // Set by close(); stops auto-reconnect
     
     // Save connection details for reconnection
     private String host;
     private int port;
 
+    // Session details for RESUME after a reconnect
+    private volatile String username;
+    private volatile String sessionToken;
+    private volatile long lastVersion = -1;
+    private volatile int resumeRequestId = -1;
+
+    // Auto-reconnect: exponential backoff with full jitter so clients don't all retry at once
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+
+    // Heartbeat: PING when nothing was sent for a while, and treat a silent server as dead
+    private static final long KEEPALIVE_MS = 10_000;
+    private static final long DEAD_AFTER_MS = 3 * KEEPALIVE_MS;
+    private volatile long lastSentNanos;
+    private volatile long lastReceivedNanos;
+    // Own lock, not this: close() runs on the FX thread and must not wait behind a connect in progress
+    private final Object heartbeatLock = new Object();
+    private ScheduledExecutorService heartbeat;
+
+    // Upper bound on a connect attempt, so an unreachable server doesn't hang reconnect for minutes
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    // Tags PLANT/HARVEST so their responses can be matched to local predictions
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    // Whose farm each outstanding QUERY asked for, so a late STATE isn't mistaken for the farm on screen.
+    // The server may merge queued STATEs for a farm, so some ids never get an answer; keep only the newest.
+    private static final int MAX_PENDING_QUERIES = 64;
+    private final ConcurrentSkipListMap<Integer, String> pendingQueries = new ConcurrentSkipListMap<>();
+
     // Callbacks for UI updates
-    private Consumer<String> onStateReceived;
+    // Called with (owner of the farm, state)
+    private BiConsumer<String, String> onStateReceived;
     private Consumer<String> onMessageReceived;
     // Special callback to notify UI about connection loss specifically
     private Runnable onConnectionLost;
+    // Called with (requestId, response) for tagged responses other than STATE, before onMessageReceived
+    private BiConsumer<Integer, String> onResponse;
+    private Runnable onReconnected;
 
-    public void connect(String host, int port) throws IOException {
+    public synchronized void connect(String host, int port) throws IOException {
         this.host = host;
         this.port = port;
         
         // Clean up previous connection if exists
-        close();
+        disconnect();
         
-        socket = new Socket(host, port);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        Socket s = new Socket();
+        socket = s; // published first so close() can abort the connect below
+        if (closed) {
+            s.close();
+            throw new IOException("Client closed");
+        }
+        s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        out = new PrintWriter(s.getOutputStream(), true);
+        in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+        pendingQueries.clear(); // answers to queries on the old connection will never come
+        lastSentNanos = System.nanoTime();
+        lastReceivedNanos = lastSentNanos;
         running = true;
+        startHeartbeat();
 
         // Start listener thread
-        Thread listener = new Thread(this::listen);
+        BufferedReader reader = in;
+        Thread listener = new Thread(() -> listen(s, reader));
         listener.setDaemon(true);
         listener.start();
     }
+
+    /** Reconnects to the last server and restores the session (RESUME, or LOGIN if there is no token). */
+    public synchronized void reconnect() throws IOException {
+        connect(host, port);
+        if (sessionToken != null) {
+            resumeRequestId = nextRequestId.getAndIncrement();
+            send("RESUME " + sessionToken + " " + lastVersion + " #" + resumeRequestId);
+        } else if (username != null) {
+            sendLogin(username);
+        }
+    }
     
     public boolean isConnected() {
         return running && socket != null && !socket.isClosed();
     }
 
-    public void setOnStateReceived(Consumer<String> onStateReceived) {
+    public void setOnStateReceived(BiConsumer<String, String> onStateReceived) {
         this.onStateReceived = onStateReceived;
     }
 
@@ -59,11 +125,25 @@ public class NetworkClient {
         this.onConnectionLost = onConnectionLost;
     }
 
-    private void listen() {
+    public void setOnResponse(BiConsumer<Integer, String> onResponse) {
+        this.onResponse = onResponse;
+    }
+
+    public void setOnReconnected(Runnable onReconnected) {
+        this.onReconnected = onReconnected;
+    }
+
+    // Version of our own farm from the last STATE, sent with RESUME so unchanged farms aren't resent
+    public void setLastVersion(long lastVersion) {
+        this.lastVersion = lastVersion;
+    }
+
+    private void listen(Socket s, BufferedReader in) {
         System.out.println("[" + Thread.currentThread().getName() + "] Network listener started");
         try {
             String line;
             while (running && (line = in.readLine()) != null) {
+                lastReceivedNanos = System.nanoTime();
                 final String msg = line;
                 Platform.runLater(() -> processMessage(msg));
             }
@@ -72,20 +152,115 @@ public class NetworkClient {
                  throw new IOException("Server closed connection");
             }
         } catch (IOException e) {
-            if (running) {
-                running = false;
-                Platform.runLater(() -> {
-                    if (onMessageReceived != null) onMessageReceived.accept("Connection lost: " + e.getMessage());
-                    if (onConnectionLost != null) onConnectionLost.run();
-                });
+            // Ignore listeners of connections we have already replaced
+            if (running && s == socket) {
+                connectionLost("Connection lost: " + e.getMessage());
             }
         }
     }
 
+    private void startHeartbeat() {
+        synchronized (heartbeatLock) {
+            if (heartbeat != null || closed) return;
+            heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "keepalive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleAtFixedRate(this::checkHeartbeat, KEEPALIVE_MS, KEEPALIVE_MS / 2, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkHeartbeat() {
+        if (!isConnected()) return;
+        long now = System.nanoTime();
+        if (now - lastReceivedNanos > TimeUnit.MILLISECONDS.toNanos(DEAD_AFTER_MS)) {
+            // Half-open connection: closing the socket makes the listener report it and reconnect
+            Socket s = socket;
+            try {
+                if (s != null) s.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        } else if (now - lastSentNanos >= TimeUnit.MILLISECONDS.toNanos(KEEPALIVE_MS)) {
+            send("PING");
+        }
+    }
+
+    private void connectionLost(String message) {
+        running = false;
+        Platform.runLater(() -> {
+            if (onMessageReceived != null) onMessageReceived.accept(message);
+            if (onConnectionLost != null) onConnectionLost.run();
+        });
+        startAutoReconnect();
+    }
+
+    private void startAutoReconnect() {
+        if (closed || host == null || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::reconnectLoop, "auto-reconnect");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void reconnectLoop() {
+        try {
+            for (int attempt = 0; !closed && !isConnected(); attempt++) {
+                long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 16));
+                Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+                if (closed || isConnected()) break; // closed, or reconnected manually meanwhile
+                try {
+                    reconnect();
+                    System.out.println("[" + Thread.currentThread().getName() + "] Reconnected after " + (attempt + 1) + " attempt(s)");
+                    Platform.runLater(() -> {
+                        if (onReconnected != null) onReconnected.run();
+                    });
+                } catch (IOException e) {
+                    System.out.println("[" + Thread.currentThread().getName() + "] Reconnect attempt " + (attempt + 1) + " failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reconnecting.set(false);
+        }
+    }
+
     private void processMessage(String msg) {
-        if (msg.startsWith("STATE ")) {
-            if (onStateReceived != null) {
-                onStateReceived.accept(msg.substring(6));
+        int requestId = -1;
+        // Tagged response: #<requestId> <response>
+        if (msg.startsWith("#")) {
+            int space = msg.indexOf(' ');
+            if (space > 1) {
+                try {
+                    requestId = Integer.parseInt(msg, 1, space, 10);
+                    msg = msg.substring(space + 1);
+                    // Server no longer knows our session (e.g. it restarted): log in again
+                    if (requestId == resumeRequestId && msg.startsWith("ERROR")) {
+                        sessionToken = null;
+                        sendLogin(username);
+                        return;
+                    }
+                    // Tagged STATEs answer queries and are routed by farm owner below
+                    if (onResponse != null && !msg.startsWith("STATE ")) {
+                        onResponse.accept(requestId, msg);
+                    }
+                } catch (NumberFormatException e) {
+                    // not a tag, treat as plain message
+                }
+            }
+        }
+        if (msg.equals("PONG")) {
+            // keepalive reply, nothing to show
+        } else if (msg.startsWith("SESSION ")) {
+            sessionToken = msg.substring(8);
+        } else if (msg.startsWith("STATE ")) {
+            // Untagged STATE is my own farm, resent after RESUME
+            String owner = requestId < 0 ? username : pendingQueries.remove(requestId);
+            if (owner != null && onStateReceived != null) {
+                onStateReceived.accept(owner, msg.substring(6));
             }
         } else {
             if (onMessageReceived != null) {
@@ -95,15 +270,21 @@ public class NetworkClient {
     }
 
     public void sendLogin(String username) {
+        this.username = username;
         send("LOGIN " + username);
     }
 
-    public void sendPlant(int row, int col) {
-        send("PLANT " + row + " " + col);
+    // Returns the request id the response will be tagged with
+    public int sendPlant(int row, int col) {
+        int requestId = nextRequestId.getAndIncrement();
+        send("PLANT " + row + " " + col + " #" + requestId);
+        return requestId;
     }
 
-    public void sendHarvest(int row, int col) {
-        send("HARVEST " + row + " " + col);
+    public int sendHarvest(int row, int col) {
+        int requestId = nextRequestId.getAndIncrement();
+        send("HARVEST " + row + " " + col + " #" + requestId);
+        return requestId;
     }
     
     public void sendSteal(String target, int row, int col) {
@@ -111,27 +292,40 @@ public class NetworkClient {
     }
 
     public void sendQuery(String targetUser) {
+        int requestId = nextRequestId.getAndIncrement();
         if (targetUser == null || targetUser.isEmpty()) {
-            send("QUERY");
+            pendingQueries.put(requestId, username);
+            send("QUERY #" + requestId);
         } else {
-            send("QUERY " + targetUser);
+            pendingQueries.put(requestId, targetUser);
+            send("QUERY " + targetUser + " #" + requestId);
+        }
+        if (pendingQueries.size() > MAX_PENDING_QUERIES) {
+            pendingQueries.pollFirstEntry();
         }
     }
 
     private void send(String cmd) {
         if (out != null && running) {
+            lastSentNanos = System.nanoTime();
             out.println(cmd);
             if (out.checkError()) { // Check if write failed
-                 running = false;
-                 Platform.runLater(() -> {
-                     if (onMessageReceived != null) onMessageReceived.accept("Write failed: Connection lost");
-                     if (onConnectionLost != null) onConnectionLost.run();
-                 });
+                 connectionLost("Write failed: Connection lost");
             }
         }
     }
 
     public void close() {
+        closed = true;
+        synchronized (heartbeatLock) {
+            if (heartbeat != null) {
+                heartbeat.shutdownNow();
+            }
+        }
+        disconnect();
+    }
+
+    private void disconnect() {
         running = false;
         try {
             if (socket != null) socket.close();
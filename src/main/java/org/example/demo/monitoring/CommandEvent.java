@@ -0,0 +1,32 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One protocol command handled by a ClientHandler; the event duration is the command's latency.
+ */
+@Name("org.example.demo.Command")
+@Label("Farm Command")
+@Category("QQ Farm")
+@Description("A command handled by the farm server")
+public class CommandEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("User")
+    @Description("Logged-in user that sent the command")
+    public String user;
+
+    @Label("Target")
+    @Description("Owner of the farm the command acted on")
+    public String target;
+
+    @Label("Outcome")
+    @Description("SUCCESS, FAIL, ERROR or STATE")
+    public String outcome;
+}
@@ -0,0 +1,25 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A client connection closed by the idle reaper.
+ */
+@Name("org.example.demo.ConnectionReaped")
+@Label("Connection Reaped")
+@Category("QQ Farm")
+@Description("Client connection closed after being idle past the timeout")
+public class ConnectionReapedEvent extends Event {
+
+    @Label("User")
+    public String user;
+
+    @Label("Idle Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long idleTime;
+}
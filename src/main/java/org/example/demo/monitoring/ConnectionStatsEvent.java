@@ -0,0 +1,26 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic snapshot of the server's client connections, emitted by the idle reaper.
+ */
+@Name("org.example.demo.ConnectionStats")
+@Label("Connection Stats")
+@Category("QQ Farm")
+@Description("Open client connections and connections reaped for idleness so far")
+@StackTrace(false)
+public class ConnectionStatsEvent extends Event {
+
+    @Label("Open Connections")
+    public int openConnections;
+
+    @Label("Reaped Connections")
+    @Description("Total since server start")
+    public long reapedConnections;
+}
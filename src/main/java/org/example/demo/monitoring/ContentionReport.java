@@ -0,0 +1,106 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prints the most contended farms, per-command latency and crop-growth lag
+ * from a recording made with farm.jfc (slow commands and locks only) or
+ * farm-full.jfc (all of them).
+ * Usage: ContentionReport <recording.jfr> [topN]
+ */
+public class ContentionReport {
+
+    private static class Stats {
+        final String name;
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long totalHoldNanos;
+        long errors;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ContentionReport <recording.jfr> [topN]");
+            System.exit(1);
+        }
+        int topN = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Map<String, Stats> farms = new HashMap<>();
+        Map<String, Stats> commands = new HashMap<>();
+        Stats growth = new Stats("growth");
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(Path.of(args[0]))) {
+            switch (event.getEventType().getName()) {
+                case "org.example.demo.FarmLock" -> {
+                    String farm = String.valueOf(event.getString("farm"));
+                    Stats stats = farms.computeIfAbsent(farm, Stats::new);
+                    stats.add(event.getLong("waitTime"));
+                    stats.totalHoldNanos += event.getLong("holdTime");
+                }
+                case "org.example.demo.Command" -> {
+                    Stats stats = commands.computeIfAbsent(String.valueOf(event.getString("command")), Stats::new);
+                    stats.add(event.getDuration().toNanos());
+                    if ("ERROR".equals(event.getString("outcome"))) {
+                        stats.errors++;
+                    }
+                }
+                case "org.example.demo.CropGrowth" -> growth.add(event.getLong("lag"));
+                default -> {
+                }
+            }
+        }
+
+        System.out.println("Top " + topN + " contended farms (by total lock wait)");
+        System.out.printf("%-20s %10s %12s %12s %12s%n", "farm", "locks", "total wait", "max wait", "total hold");
+        List<Stats> byWait = new ArrayList<>(farms.values());
+        byWait.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        for (Stats s : byWait.subList(0, Math.min(topN, byWait.size()))) {
+            System.out.printf("%-20s %10d %12s %12s %12s%n", s.name, s.count,
+                    format(s.totalNanos), format(s.maxNanos), format(s.totalHoldNanos));
+        }
+
+        System.out.println();
+        System.out.println("Commands");
+        System.out.printf("%-10s %10s %12s %12s %8s%n", "command", "count", "avg", "max", "errors");
+        List<Stats> byCommand = new ArrayList<>(commands.values());
+        byCommand.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        for (Stats s : byCommand) {
+            System.out.printf("%-10s %10d %12s %12s %8d%n", s.name, s.count,
+                    format(s.totalNanos / s.count), format(s.maxNanos), s.errors);
+        }
+
+        System.out.println();
+        if (growth.count > 0) {
+            System.out.println("Crop growth: " + growth.count + " ripened, avg scheduler lag "
+                    + format(growth.totalNanos / growth.count) + ", max " + format(growth.maxNanos));
+        } else {
+            System.out.println("Crop growth: no events");
+        }
+    }
+
+    private static String format(long nanos) {
+        if (nanos >= 1_000_000_000L) return String.format("%.2f s", nanos / 1e9);
+        if (nanos >= 1_000_000L) return String.format("%.2f ms", nanos / 1e6);
+        if (nanos >= 1_000L) return String.format("%.1f us", nanos / 1e3);
+        return nanos + " ns";
+    }
+}
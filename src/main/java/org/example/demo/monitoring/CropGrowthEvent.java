@@ -0,0 +1,32 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A crop ripening on the shared growth scheduler, with how late it ran.
+ */
+@Name("org.example.demo.CropGrowth")
+@Label("Crop Growth")
+@Category("QQ Farm")
+@Description("Crop ripened by the growth scheduler")
+public class CropGrowthEvent extends Event {
+
+    @Label("Farm")
+    public String farm;
+
+    @Label("Row")
+    public int row;
+
+    @Label("Column")
+    public int col;
+
+    @Label("Scheduler Lag")
+    @Description("Actual ripen time minus intended ripen time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lag;
+}
@@ -0,0 +1,63 @@
+package org.example.demo.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Time spent waiting for and holding a farm's monitor.
+ * Usage: {@link #requested()} before entering {@code synchronized},
+ * {@link #acquired()} first thing inside it and {@link #released} in a finally block.
+ */
+@Name("org.example.demo.FarmLock")
+@Label("Farm Lock")
+@Category("QQ Farm")
+@Description("Wait and hold time of a Game monitor")
+public class FarmLockEvent extends Event {
+
+    @Label("Farm")
+    @Description("Owner of the farm whose lock was taken")
+    public String farm;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long waitTime;
+
+    @Label("Hold Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long holdTime;
+
+    // Not recorded (transient fields are ignored by JFR)
+    private transient long requestedAt;
+    private transient long acquiredAt;
+
+    public void requested() {
+        if (isEnabled()) {
+            requestedAt = System.nanoTime();
+            begin();
+        }
+    }
+
+    public void acquired() {
+        if (isEnabled()) {
+            acquiredAt = System.nanoTime();
+        }
+    }
+
+    public void released(String farm, String operation) {
+        end();
+        if (requestedAt != 0 && shouldCommit()) { // enabled mid-operation: nothing to report
+            this.farm = farm;
+            this.operation = operation;
+            this.waitTime = acquiredAt - requestedAt;
+            this.holdTime = System.nanoTime() - acquiredAt;
+            commit();
+        }
+    }
+}
@@ -1,18 +1,61 @@
 package org.example.demo.server;
 
 import org.example.demo.Game;
+import org.example.demo.monitoring.CommandEvent;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
 
 public class ClientHandler implements Runnable {
+    // Per-command logging allocates for every line, so it is opt-in (-Dfarm.logCommands=true)
+    private static final boolean LOG_COMMANDS = Boolean.getBoolean("farm.logCommands");
+
+    // Pre-encoded response templates
+    private static final byte[] SUCCESS_LOGGED_IN = ResponseWriter.encode("SUCCESS Logged in as ");
+    private static final byte[] SUCCESS_RESUMED = ResponseWriter.encode("SUCCESS Resumed as ");
+    private static final byte[] SUCCESS_PLANTED = ResponseWriter.encode("SUCCESS Planted at ");
+    private static final byte[] SUCCESS_HARVESTED = ResponseWriter.encode("SUCCESS Harvested at ");
+    private static final byte[] GAINED = ResponseWriter.encode(". Gained ");
+    private static final byte[] SUCCESS_STOLE = ResponseWriter.encode("SUCCESS Stole ");
+    private static final byte[] FROM = ResponseWriter.encode(" from ");
+    private static final byte[] FAIL_STEAL = ResponseWriter.encode("FAIL Could not steal (not ripe or already stolen)");
+    private static final byte[] SESSION = ResponseWriter.encode("SESSION ");
+    private static final byte[] PONG = ResponseWriter.encode("PONG");
+    private static final byte[] ERROR = ResponseWriter.encode("ERROR ");
+    private static final byte[] ERROR_UNKNOWN_COMMAND = ResponseWriter.encode("ERROR Unknown command");
+    private static final byte[] ERROR_LOGIN_FIRST = ResponseWriter.encode("ERROR Please login first");
+    private static final byte[] ERROR_MISSING_USERNAME = ResponseWriter.encode("ERROR Missing username");
+    private static final byte[] ERROR_NO_TARGET = ResponseWriter.encode("ERROR Not logged in and no target specified");
+    private static final byte[] ERROR_USER = ResponseWriter.encode("ERROR User ");
+    private static final byte[] NOT_FOUND = ResponseWriter.encode(" not found");
+    private static final byte[] ERROR_TARGET_NOT_FOUND = ResponseWriter.encode("ERROR Target user not found");
+    private static final byte[] ERROR_STEAL_SELF = ResponseWriter.encode("ERROR Cannot steal from yourself");
+    private static final byte[] ERROR_SESSION_EXPIRED = ResponseWriter.encode("ERROR Session expired");
+    private static final byte[] ERROR_INVALID_PLOT = ResponseWriter.encode("ERROR Invalid plot");
+    private static final byte[] USAGE_RESUME = ResponseWriter.encode("ERROR Usage: RESUME <token> <lastVersion>");
+    private static final byte[] USAGE_PLANT = ResponseWriter.encode("ERROR Usage: PLANT <row> <col>");
+    private static final byte[] USAGE_HARVEST = ResponseWriter.encode("ERROR Usage: HARVEST <row> <col>");
+    private static final byte[] USAGE_STEAL = ResponseWriter.encode("ERROR Usage: STEAL <target_user> <row> <col>");
+
     private final Socket socket;
     private final FarmServer server;
     private String currentUser;
-    private PrintWriter out;
+    private byte[] currentUserBytes;
+    // Resolved once at LOGIN/RESUME so commands on my own farm skip the directory lookup;
+    // the id also keys this player's session
+    private int currentPlayerId = -1;
+    private Game currentGame;
+
+    // Last farm looked up by name, so polling a friend's farm doesn't re-resolve it every time
+    private byte[] lastTargetBytes;
+    private Game lastTargetGame;
+
+    private CommandReader in;
+    private OutboundQueue outbound;
+    private ResponseWriter out;
+    // Time of the last command received, checked by the server's IdleReaper
+    private volatile long lastActivityNanos = System.nanoTime();
 
     public ClientHandler(Socket socket, FarmServer server) {
         this.socket = socket;
@@ -21,149 +64,311 @@ public class ClientHandler implements Runnable {
 
     @Override
     public void run() {
-        try (
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true)
-        ) {
-            this.out = out;
-            String line;
-            while ((line = in.readLine()) != null) {
-                handleCommand(line);
+        boolean endOfInput = false;
+        try {
+            this.in = new CommandReader(socket.getInputStream());
+            // Responses go through a bounded queue drained by a sender task on the pool
+            // (started only while there is something to send), so a client that stops
+            // reading cannot block this thread on a socket write. The sender closes the
+            // connection, which also takes it off the idle reaper.
+            this.outbound = new OutboundQueue(new BufferedOutputStream(socket.getOutputStream()), this::closeConnection, server::execute);
+            this.out = new ResponseWriter(outbound);
+            server.getIdleReaper().register(this);
+            while (true) {
+                if (!in.next()) {
+                    endOfInput = true;
+                    break;
+                }
+                lastActivityNanos = System.nanoTime();
+                handleCommand();
+                // Stop reading while this client is behind on its responses
+                if (!outbound.awaitDrain()) {
+                    break;
+                }
             }
         } catch (IOException e) {
             System.out.println("Client disconnected: " + currentUser);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
+            if (outbound == null) {
+                closeConnection();
+            } else if (endOfInput) {
+                // Client half-closed: still deliver the responses already queued.
+                // If it never reads them, the idle reaper closes the connection.
+                outbound.finish();
+            } else {
+                outbound.close();
             }
         }
     }
 
-    private void handleCommand(String cmdLine) {
-        String[] parts = cmdLine.split(" ");
-        String command = parts[0].toUpperCase();
-
+    private void closeConnection() {
+        server.getIdleReaper().unregister(this);
         try {
+            socket.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private void handleCommand() throws IOException {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        out.resetOutcome();
+        Opcode command = in.opcode();
+
+        dispatch(command);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command.name();
+            event.user = currentUser;
+            event.target = commandTarget(command);
+            event.outcome = out.outcome();
+            event.commit();
+        }
+    }
+
+    private void dispatch(Opcode command) throws IOException {
+        int tag = in.tag();
+
+        if (LOG_COMMANDS) {
             // Log current thread
-            System.out.println("[" + Thread.currentThread().getName() + "] Handling: " + cmdLine);
+            System.out.println("[" + Thread.currentThread().getName() + "] Handling: " + in.lineAsString());
+        }
+
+        String lineError = in.lineError();
+        if (lineError != null) {
+            out.begin(tag).write(ERROR).write(lineError).endLine();
+            return;
+        }
 
+        try {
             switch (command) {
-                case "LOGIN": // LOGIN <username>
-                    if (parts.length < 2) {
-                        out.println("ERROR Missing username");
-                        return;
-                    }
-                    this.currentUser = parts[1];
-                    server.getOrCreatePlayer(this.currentUser);
-                    out.println("SUCCESS Logged in as " + currentUser);
+                case LOGIN: // LOGIN <username>
+                    handleLogin(tag);
+                    break;
+
+                case RESUME: // RESUME <token> <lastVersion>
+                    handleResume(tag);
                     break;
 
-                case "PLANT": // PLANT <row> <col>
-                    handlePlant(parts);
+                case PLANT: // PLANT <row> <col>
+                    handlePlant(tag);
                     break;
 
-                case "HARVEST": // HARVEST <row> <col>
-                    handleHarvest(parts);
+                case HARVEST: // HARVEST <row> <col>
+                    handleHarvest(tag);
                     break;
-                
-                case "QUERY": // QUERY <username>
-                     handleQuery(parts);
+
+                case QUERY: // QUERY <username>
+                     handleQuery(tag);
                      break;
 
-                case "STEAL": // STEAL <target_user> <row> <col>
-                     handleSteal(parts);
+                case STEAL: // STEAL <target_user> <row> <col>
+                     handleSteal(tag);
                      break;
-                     
+
+                case PING: // PING (keepalive)
+                    out.begin(tag).write(PONG).endLine();
+                    break;
+
                 default:
-                    out.println("ERROR Unknown command");
+                    out.begin(tag).write(ERROR_UNKNOWN_COMMAND).endLine();
             }
-        } catch (Exception e) {
-            out.println("ERROR " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Game rule violations (e.g. "Plot occupied") are reported by Game as exceptions
+            out.begin(tag).write(ERROR).write(String.valueOf(e.getMessage())).endLine();
             System.out.println("[" + Thread.currentThread().getName() + "] Command error (" + command + "): " + e.getMessage());
         }
     }
 
-    private void handlePlant(String[] parts) {
+    private void handleLogin(int tag) throws IOException {
+        if (in.argCount() < 1) {
+            out.begin(tag).write(ERROR_MISSING_USERNAME).endLine();
+            return;
+        }
+        if (!in.argEquals(0, currentUserBytes)) {
+            setCurrentUser(in.stringArg(0));
+        }
+        this.currentPlayerId = server.login(currentUser);
+        this.currentGame = server.getPlayer(currentPlayerId);
+        out.begin(tag).write(SUCCESS_LOGGED_IN).write(currentUserBytes).endLine();
+        out.write(SESSION).write(server.createSession(currentPlayerId)).endLine();
+    }
+
+    private void handleResume(int tag) throws IOException {
+        long lastVersion = in.longArg(1);
+        if (in.argCount() < 2 || lastVersion == Long.MIN_VALUE) {
+            out.begin(tag).write(USAGE_RESUME).endLine();
+            return;
+        }
+        int playerId = server.resumeSession(in.stringArg(0));
+        Game game = server.getPlayer(playerId);
+        if (game == null) {
+            out.begin(tag).write(ERROR_SESSION_EXPIRED).endLine();
+            return;
+        }
+        setCurrentUser(game.getOwner());
+        this.currentPlayerId = playerId;
+        this.currentGame = game;
+        out.begin(tag).write(SUCCESS_RESUMED).write(currentUserBytes).endLine();
+        // Only resend the farm if it changed while the client was away
+        if (game.getVersion() != lastVersion) {
+            out.writeState(CommandReader.NO_TAG, game);
+        }
+    }
+
+    private void handlePlant(int tag) throws IOException {
         if (currentUser == null) {
-            out.println("ERROR Please login first");
+            out.begin(tag).write(ERROR_LOGIN_FIRST).endLine();
+            return;
+        }
+        int row = in.intArg(0);
+        int col = in.intArg(1);
+        if (row == CommandReader.INVALID || col == CommandReader.INVALID) {
+            out.begin(tag).write(USAGE_PLANT).endLine();
+            return;
+        }
+        if (!isValidPlot(currentGame, row, col)) {
+            out.begin(tag).write(ERROR_INVALID_PLOT).endLine();
             return;
         }
-        int row = Integer.parseInt(parts[1]);
-        int col = Integer.parseInt(parts[2]);
-        
-        Game game = server.getPlayer(currentUser);
-        game.plant(row, col); 
-        out.println("SUCCESS Planted at " + row + "," + col);
+
+        currentGame.plant(row, col);
+        out.begin(tag).write(SUCCESS_PLANTED).write(row).write((byte) ',').write(col).endLine();
     }
 
-    private void handleHarvest(String[] parts) {
+    private void handleHarvest(int tag) throws IOException {
         if (currentUser == null) {
-            out.println("ERROR Please login first");
+            out.begin(tag).write(ERROR_LOGIN_FIRST).endLine();
+            return;
+        }
+        int row = in.intArg(0);
+        int col = in.intArg(1);
+        if (row == CommandReader.INVALID || col == CommandReader.INVALID) {
+            out.begin(tag).write(USAGE_HARVEST).endLine();
             return;
         }
-        int row = Integer.parseInt(parts[1]);
-        int col = Integer.parseInt(parts[2]);
-        
-        Game game = server.getPlayer(currentUser);
-        int reward = game.harvest(row, col);
-        out.println("SUCCESS Harvested at " + row + "," + col + ". Gained " + reward);
-    }
-    
-    private void handleQuery(String[] parts) {
-        String targetUser;
-        if (parts.length > 1) {
-            targetUser = parts[1];
+        if (!isValidPlot(currentGame, row, col)) {
+            out.begin(tag).write(ERROR_INVALID_PLOT).endLine();
+            return;
+        }
+
+        int reward = currentGame.harvest(row, col);
+        out.begin(tag).write(SUCCESS_HARVESTED).write(row).write((byte) ',').write(col)
+                .write(GAINED).write(reward).endLine();
+    }
+
+    private void handleQuery(int tag) throws IOException {
+        Game game;
+        if (in.argCount() > 0 && !in.argEquals(0, currentUserBytes)) {
+            game = resolveTarget();
+            if (game == null) {
+                // If user doesn't exist, maybe create just to view empty? Or return error.
+                out.begin(tag).write(ERROR_USER).write(in.stringArg(0)).write(NOT_FOUND).endLine();
+                return;
+            }
         } else {
             if (currentUser == null) {
-                out.println("ERROR Not logged in and no target specified");
+                out.begin(tag).write(ERROR_NO_TARGET).endLine();
                 return;
             }
-            targetUser = currentUser;
+            game = currentGame;
         }
 
-        Game game = server.getPlayer(targetUser);
-        if (game == null) {
-            // If user doesn't exist, maybe create just to view empty? Or return error.
-            out.println("ERROR User " + targetUser + " not found");
-            return;
-        }
-        
-        out.println("STATE " + game.serialize());
+        out.writeState(tag, game);
     }
-    
-    private void handleSteal(String[] parts) {
+
+    private void handleSteal(int tag) throws IOException {
          if (currentUser == null) {
-            out.println("ERROR Please login first");
+            out.begin(tag).write(ERROR_LOGIN_FIRST).endLine();
             return;
         }
-         if (parts.length < 4) {
-             out.println("ERROR Usage: STEAL <target_user> <row> <col>");
+         int row = in.intArg(1);
+         int col = in.intArg(2);
+         if (in.argCount() < 3 || row == CommandReader.INVALID || col == CommandReader.INVALID) {
+             out.begin(tag).write(USAGE_STEAL).endLine();
              return;
          }
-         
-         String targetUser = parts[1];
-         if (targetUser.equals(currentUser)) {
-             out.println("ERROR Cannot steal from yourself");
+
+         if (in.argEquals(0, currentUserBytes)) {
+             out.begin(tag).write(ERROR_STEAL_SELF).endLine();
              return;
          }
-         
-         int row = Integer.parseInt(parts[2]);
-         int col = Integer.parseInt(parts[3]);
-         
-         Game targetGame = server.getPlayer(targetUser);
+
+         Game targetGame = resolveTarget();
          if (targetGame == null) {
-             out.println("ERROR Target user not found");
+             out.begin(tag).write(ERROR_TARGET_NOT_FOUND).endLine();
+             return;
+         }
+         if (!isValidPlot(targetGame, row, col)) {
+             out.begin(tag).write(ERROR_INVALID_PLOT).endLine();
              return;
          }
          int stolenAmount = targetGame.steal(row, col);
-         
+
          if (stolenAmount > 0) {
-             Game myGame = server.getPlayer(currentUser);
-             myGame.addCoins(stolenAmount);
-             out.println("SUCCESS Stole " + stolenAmount + " from " + targetUser);
+             currentGame.addCoins(stolenAmount);
+             out.begin(tag).write(SUCCESS_STOLE).write(stolenAmount).write(FROM).write(lastTargetBytes).endLine();
          } else {
-             out.println("FAIL Could not steal (not ripe or already stolen)");
+             out.begin(tag).write(FAIL_STEAL).endLine();
          }
     }
+
+    // Owner of the farm a command acted on; allocates, so only called when recording
+    private String commandTarget(Opcode command) {
+        switch (command) {
+            case PLANT:
+            case HARVEST:
+                return currentUser;
+            case QUERY:
+                return in.argCount() > 0 ? in.stringArg(0) : currentUser;
+            case STEAL:
+            case LOGIN:
+                return in.stringArg(0);
+            default:
+                return null;
+        }
+    }
+
+    // Resolves the farm named by the first argument; only allocates when the name changes
+    private Game resolveTarget() {
+        if (lastTargetGame != null && in.argEquals(0, lastTargetBytes)) {
+            return lastTargetGame;
+        }
+        String targetUser = in.stringArg(0);
+        Game game = server.getPlayer(targetUser);
+        if (game != null) {
+            lastTargetBytes = ResponseWriter.encode(targetUser);
+            lastTargetGame = game;
+        }
+        return game;
+    }
+
+    long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    String getCurrentUser() {
+        return currentUser;
+    }
+
+    // Called by the IdleReaper; closing the socket unblocks the read in run()
+    void closeIdle() {
+        if (outbound != null) {
+            outbound.close();
+        } else {
+            closeConnection();
+        }
+    }
+
+    private void setCurrentUser(String username) {
+        this.currentUser = username;
+        this.currentUserBytes = ResponseWriter.encode(username);
+    }
+
+    private static boolean isValidPlot(Game game, int row, int col) {
+        return row < game.getRows() && col < game.getCols();
+    }
 }
@@ -0,0 +1,183 @@
+package org.example.demo.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads text commands straight from the socket into reusable byte buffers.
+ * Each line is split into an {@link Opcode}, up to {@value #MAX_ARGS} argument
+ * ranges and an optional trailing "#<id>" request tag. Numbers are parsed from
+ * the bytes directly and malformed input is reported through return values,
+ * so reading PLANT/HARVEST/QUERY allocates nothing and never throws on bad input.
+ */
+public class CommandReader {
+
+    public static final int INVALID = Integer.MIN_VALUE;
+    public static final int NO_TAG = -1;
+
+    private static final int MAX_LINE = 1024;
+    private static final int MAX_ARGS = 4;
+
+    private final InputStream in;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+
+    private final byte[] line = new byte[MAX_LINE];
+    private int lineLength;
+    private boolean tooLong;
+
+    private Opcode opcode = Opcode.UNKNOWN;
+    private final int[] argStart = new int[MAX_ARGS];
+    private final int[] argEnd = new int[MAX_ARGS];
+    private int argCount;
+    private boolean tooManyArgs;
+    private int tag = NO_TAG;
+    private boolean badTag;
+
+    public CommandReader(InputStream in) {
+        this.in = in;
+    }
+
+    // Reads and tokenizes the next line; returns false at end of stream
+    public boolean next() throws IOException {
+        lineLength = 0;
+        tooLong = false;
+        while (true) {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (lineLength == 0 && !tooLong) return false;
+                    break; // last line without newline
+                }
+            }
+            byte b = buf[pos++];
+            if (b == '\n') break;
+            if (b == '\r') continue;
+            if (lineLength < MAX_LINE) {
+                line[lineLength++] = b;
+            } else {
+                tooLong = true; // keep consuming until the end of the line
+            }
+        }
+        tokenize();
+        return true;
+    }
+
+    private void tokenize() {
+        opcode = Opcode.UNKNOWN;
+        argCount = 0;
+        tooManyArgs = false;
+        tag = NO_TAG;
+        badTag = false;
+        if (tooLong) return;
+
+        int i = 0;
+        boolean first = true;
+        while (i < lineLength) {
+            while (i < lineLength && line[i] == ' ') i++;
+            if (i == lineLength) break;
+            int start = i;
+            while (i < lineLength && line[i] != ' ') i++;
+            if (first) {
+                opcode = Opcode.match(line, start, i);
+                first = false;
+            } else if (argCount < MAX_ARGS) {
+                argStart[argCount] = start;
+                argEnd[argCount] = i;
+                argCount++;
+            } else {
+                tooManyArgs = true;
+            }
+        }
+
+        // Optional request tag: last token "#<id>"
+        if (argCount > 0 && line[argStart[argCount - 1]] == '#') {
+            argCount--;
+            tag = parseInt(argStart[argCount] + 1, argEnd[argCount]);
+            if (tag == INVALID) {
+                tag = NO_TAG;
+                badTag = true;
+            }
+        }
+    }
+
+    public Opcode opcode() {
+        return opcode;
+    }
+
+    // Problem with the line as a whole, or null if it is well-formed
+    public String lineError() {
+        if (tooLong) return "Line too long";
+        if (tooManyArgs) return "Too many arguments";
+        if (badTag) return "Invalid request tag";
+        return null;
+    }
+
+    public int argCount() {
+        return argCount;
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    // Non-negative int argument, or INVALID if missing or not a number
+    public int intArg(int index) {
+        if (index >= argCount) return INVALID;
+        return parseInt(argStart[index], argEnd[index]);
+    }
+
+    // Long argument (optionally negative), or Long.MIN_VALUE if missing or not a number
+    public long longArg(int index) {
+        if (index >= argCount) return Long.MIN_VALUE;
+        int start = argStart[index];
+        int end = argEnd[index];
+        boolean negative = start < end && line[start] == '-';
+        if (negative) start++;
+        if (start == end || end - start > 18) return Long.MIN_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) return Long.MIN_VALUE;
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Compares an argument with already-encoded bytes without allocating
+    public boolean argEquals(int index, byte[] value) {
+        if (index >= argCount || value == null) return false;
+        int start = argStart[index];
+        int length = argEnd[index] - start;
+        if (length != value.length) return false;
+        for (int i = 0; i < length; i++) {
+            if (line[start + i] != value[i]) return false;
+        }
+        return true;
+    }
+
+    // Allocates; only used for names and tokens that must become map keys
+    public String stringArg(int index) {
+        if (index >= argCount) return null;
+        return new String(line, argStart[index], argEnd[index] - argStart[index], StandardCharsets.UTF_8);
+    }
+
+    public String lineAsString() {
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    private int parseInt(int start, int end) {
+        if (start == end || end - start > 9) return INVALID;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) return INVALID;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -5,27 +5,43 @@ import org.example.demo.Game;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class FarmServer {
     private static final int PORT = 8888;
-    // 存储所有在线或离线玩家的游戏状态：Map<Username, GameInstance>
+    private static final int BACKLOG = 1024;
+    // Accept-rate throttling: after a restart, reconnecting clients are admitted at a steady
+    // pace (with a small burst allowance) while the rest wait in the listen backlog
+    private static final int ACCEPT_RATE = Integer.getInteger("farm.acceptRate", 500); // per second; 0 or less disables throttling
+    private static final int ACCEPT_BURST = Math.max(0, Integer.getInteger("farm.acceptBurst", 50));
+    // 存储所有在线或离线玩家的游戏状态：Username -> 整数 ID -> GameInstance
     // 这里为了简单，直接把原来的 Game 类当作单个玩家的状态容器
-    private final Map<String, Game> playerStates = new ConcurrentHashMap<>();
+    private final PlayerDirectory players = new PlayerDirectory();
     private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private final IdleReaper idleReaper = new IdleReaper();
+    // Session token -> player id, so a reconnecting client can RESUME without a new LOGIN
+    private final Map<String, Integer> sessions = new ConcurrentHashMap<>();
+    private final Map<Integer, String> sessionByPlayer = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private long nextAcceptNanos = System.nanoTime();
 
     public static void main(String[] args) {
         new FarmServer().start();
     }
 
     public void start() {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        try (ServerSocket serverSocket = new ServerSocket(PORT, BACKLOG)) {
             System.out.println("[" + Thread.currentThread().getName() + "] Farm Server started on port " + PORT);
+            idleReaper.start();
 
             while (true) {
+                throttleAccept();
                 Socket clientSocket = serverSocket.accept();
                 System.out.println("[" + Thread.currentThread().getName() + "] New client connected: " + clientSocket.getInetAddress());
                 // 为每个客户端启动一个处理线程
@@ -33,15 +49,63 @@ public class FarmServer {
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public synchronized Game getOrCreatePlayer(String username) {
-        return playerStates.computeIfAbsent(username, k -> new Game());
+    public IdleReaper getIdleReaper() {
+        return idleReaper;
+    }
+
+    // Runs connection-scoped background work (e.g. outbound senders) on the client thread pool
+    void execute(Runnable task) {
+        threadPool.execute(task);
+    }
+
+    private void throttleAccept() throws InterruptedException {
+        if (ACCEPT_RATE <= 0) return;
+        long interval = 1_000_000_000L / ACCEPT_RATE;
+        long now = System.nanoTime();
+        // Unused capacity accumulates up to ACCEPT_BURST accepts
+        nextAcceptNanos = Math.max(nextAcceptNanos, now - ACCEPT_BURST * interval);
+        long wait = nextAcceptNanos - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextAcceptNanos += interval;
+    }
+
+    // Issues a new session token for the player, replacing any previous one
+    public String createSession(int playerId) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String token = HexFormat.of().formatHex(bytes);
+        sessions.put(token, playerId);
+        String previous = sessionByPlayer.put(playerId, token);
+        if (previous != null) {
+            sessions.remove(previous);
+        }
+        return token;
+    }
+
+    // Returns the player id of the session, or -1 if the token is unknown
+    public int resumeSession(String token) {
+        Integer playerId = sessions.get(token);
+        return playerId == null ? -1 : playerId;
+    }
+
+    // Returns the player's id, creating the farm on first login
+    public int login(String username) {
+        return players.register(username);
+    }
+
+    public Game getPlayer(int playerId) {
+        return players.get(playerId);
     }
     
     public Game getPlayer(String username) {
-        return playerStates.get(username);
+        return players.get(username);
     }
 }
 
@@ -0,0 +1,85 @@
+package org.example.demo.server;
+
+import jdk.jfr.FlightRecorder;
+import org.example.demo.monitoring.ConnectionReapedEvent;
+import org.example.demo.monitoring.ConnectionStatsEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closes client connections that have sent nothing (not even a PING) for
+ * longer than the idle timeout. A single timer thread scans all open
+ * connections, instead of each connection keeping its own timer.
+ * Connection counts are published as the periodic JFR event
+ * {@code org.example.demo.ConnectionStats}.
+ */
+public class IdleReaper {
+
+    static final long IDLE_TIMEOUT_MS = Long.getLong("farm.idleTimeoutMs", 60_000);
+
+    private final Set<ClientHandler> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reaped = new AtomicLong();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idle-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void start() {
+        // Check a few times per timeout so a connection is reaped at most ~25% late
+        long period = Math.max(100, IDLE_TIMEOUT_MS / 4);
+        timer.scheduleAtFixedRate(this::reapIdle, period, period, TimeUnit.MILLISECONDS);
+        FlightRecorder.addPeriodicEvent(ConnectionStatsEvent.class, this::emitStats);
+    }
+
+    void register(ClientHandler handler) {
+        connections.add(handler);
+    }
+
+    void unregister(ClientHandler handler) {
+        connections.remove(handler);
+    }
+
+    public int getOpenConnections() {
+        return connections.size();
+    }
+
+    public long getReapedConnections() {
+        return reaped.get();
+    }
+
+    private void emitStats() {
+        ConnectionStatsEvent event = new ConnectionStatsEvent();
+        event.openConnections = getOpenConnections();
+        event.reapedConnections = getReapedConnections();
+        event.commit();
+    }
+
+    private void reapIdle() {
+        long now = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS);
+        for (ClientHandler handler : connections) {
+            long idle = now - handler.getLastActivityNanos();
+            if (idle > timeoutNanos) {
+                connections.remove(handler);
+                handler.closeIdle();
+                long total = reaped.incrementAndGet();
+
+                ConnectionReapedEvent event = new ConnectionReapedEvent();
+                if (event.shouldCommit()) {
+                    event.user = handler.getCurrentUser();
+                    event.idleTime = idle;
+                    event.commit();
+                }
+                System.out.println("[" + Thread.currentThread().getName() + "] Reaped idle connection: " + handler.getCurrentUser()
+                        + " (idle " + TimeUnit.NANOSECONDS.toMillis(idle) + " ms, " + total + " reaped, "
+                        + connections.size() + " open)");
+            }
+        }
+    }
+}
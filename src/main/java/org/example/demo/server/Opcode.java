@@ -0,0 +1,34 @@
+package org.example.demo.server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Commands of the text protocol, matched case-insensitively against raw bytes.
+ */
+public enum Opcode {
+    LOGIN, RESUME, PLANT, HARVEST, QUERY, STEAL, PING, UNKNOWN;
+
+    private static final Opcode[] VALUES = values();
+
+    private final byte[] name = name().getBytes(StandardCharsets.US_ASCII);
+
+    // Looks up the opcode spelled by buf[start, end) without allocating
+    static Opcode match(byte[] buf, int start, int end) {
+        for (Opcode op : VALUES) {
+            if (op != UNKNOWN && op.matches(buf, start, end)) {
+                return op;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private boolean matches(byte[] buf, int start, int end) {
+        if (end - start != name.length) return false;
+        for (int i = 0; i < name.length; i++) {
+            int b = buf[start + i];
+            if (b >= 'a' && b <= 'z') b -= 'a' - 'A';
+            if (b != name[i]) return false;
+        }
+        return true;
+    }
+}
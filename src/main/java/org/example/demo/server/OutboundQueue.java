@@ -0,0 +1,309 @@
+package org.example.demo.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Bounded per-connection queue of outgoing response lines.
+ * Producers never touch the socket: they enqueue, and a sender task drains
+ * the queue to the socket. The sender is only started when the queue goes from
+ * empty to non-empty and exits after lingering briefly with nothing to send,
+ * so idle connections don't hold a thread.
+ * Lines are stored back to back in one circular byte buffer, so the limits
+ * below are the heap the queue actually holds: it grows up to the hard limit
+ * and shrinks back once it has drained. An unsent STATE line for a farm is
+ * replaced by a newer one (only the latest snapshot per farm is kept). Once
+ * more than the high watermark is queued the handler stops reading commands
+ * until the queue drains to the low watermark; a client that stays over the
+ * limit for too long, or lets the queue reach its hard limit, is disconnected
+ * and whatever is still queued is discarded. When the client simply stops
+ * sending, {@link #finish()} lets the sender write out everything already
+ * queued first. Steady-state queueing does not allocate.
+ */
+public class OutboundQueue {
+
+    static final int HIGH_WATERMARK = Integer.getInteger("farm.outbound.highWatermark", 64 * 1024);
+    static final int LOW_WATERMARK = Integer.getInteger("farm.outbound.lowWatermark", 16 * 1024);
+    static final int MAX_BYTES = Integer.getInteger("farm.outbound.maxBytes", 256 * 1024);
+    static final long MAX_STALL_MS = Long.getLong("farm.outbound.maxStallMs", 5000);
+    // How long an idle sender waits for more lines before giving its thread back
+    static final long SENDER_LINGER_MS = Long.getLong("farm.outbound.senderLingerMs", 50);
+
+    private static final int INITIAL_CAPACITY = 1024; // bytes; a few responses including STATE
+    private static final int INITIAL_LINES = 16;
+    private static final int LINE_OVERHEAD = 12; // index entry per queued line: start, length, key
+    // Marks a queued line superseded by a newer STATE; skipped by the sender
+    private static final Object SUPERSEDED = new Object();
+
+    private final OutputStream out;
+    private final Closeable connection;
+    private final Executor executor;
+    private final Runnable drainTask = this::drain;
+
+    // Queued bytes, oldest at start; includes the line currently being written
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int start;
+    private int used;
+
+    // Ring of queued lines (not including the one being written), oldest at lineHead
+    private int[] lineStart = new int[INITIAL_LINES];
+    private int[] lineLength = new int[INITIAL_LINES];
+    private Object[] lineKey = new Object[INITIAL_LINES];
+    private int lineHead;
+    private int lineCount;
+
+    private boolean closed;
+    private boolean finishing; // no more messages will be enqueued; close once drained
+    private boolean draining; // a sender task is scheduled or running
+
+    public OutboundQueue(OutputStream out, Closeable connection, Executor executor) {
+        this.out = out;
+        this.connection = connection;
+        this.executor = executor;
+    }
+
+    // Never blocks. Returns false if the connection is closed or has just been closed for exceeding MAX_BYTES.
+    public boolean enqueue(byte[] bytes, int length, Object coalesceKey) {
+        boolean startSender;
+        synchronized (this) {
+            if (closed || finishing) return false;
+
+            int queued = coalesceKey == null ? -1 : findQueued(coalesceKey);
+            if (queued >= 0 && lineLength[queued] == length) {
+                copyIn(bytes, lineStart[queued], length); // replace the stale snapshot in place
+                return true;
+            }
+            if (heldBytes() + length + LINE_OVERHEAD > MAX_BYTES) {
+                System.out.println("[" + Thread.currentThread().getName() + "] Outbound queue full (" + heldBytes() + " bytes), disconnecting slow client");
+                closeLocked();
+                return false;
+            }
+            if (used + length > buf.length) {
+                grow(used + length);
+            }
+            if (queued >= 0) {
+                lineKey[queued] = SUPERSEDED; // different length: drop the old one, queue the new one
+            }
+            int offset = wrap(start + used);
+            copyIn(bytes, offset, length);
+            used += length;
+            addLine(offset, length, coalesceKey);
+
+            startSender = !draining;
+            draining = true;
+            notifyAll();
+        }
+        if (startSender) {
+            executor.execute(drainTask);
+        }
+        return true;
+    }
+
+    // Called by the handler between commands. Returns false if the client stayed
+    // above the high watermark for longer than MAX_STALL_MS (the connection is then closed).
+    public synchronized boolean awaitDrain() throws InterruptedException {
+        if (heldBytes() <= HIGH_WATERMARK) return !closed;
+        long deadline = System.currentTimeMillis() + MAX_STALL_MS;
+        while (!closed && heldBytes() > LOW_WATERMARK) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                System.out.println("[" + Thread.currentThread().getName() + "] Client above outbound watermark for " + MAX_STALL_MS + " ms, disconnecting");
+                closeLocked();
+                return false;
+            }
+            wait(wait);
+        }
+        return !closed;
+    }
+
+    // Sender task: writes queued lines until the queue has stayed empty for
+    // SENDER_LINGER_MS, or is closed, or is finished and drained
+    private void drain() {
+        try {
+            while (true) {
+                byte[] data;
+                int offset;
+                int length;
+                synchronized (this) {
+                    if (lineCount == 0 && !closed && !finishing) {
+                        wait(SENDER_LINGER_MS);
+                    }
+                    if (closed) {
+                        draining = false;
+                        return;
+                    }
+                    if (lineCount == 0) {
+                        draining = false;
+                        if (finishing) {
+                            closeLocked(); // everything has been written and flushed
+                        } else {
+                            shrink();
+                        }
+                        return;
+                    }
+                    offset = lineStart[lineHead];
+                    length = lineLength[lineHead];
+                    boolean superseded = lineKey[lineHead] == SUPERSEDED;
+                    pollLine();
+                    if (superseded) {
+                        release(length);
+                        notifyAll();
+                        continue;
+                    }
+                    data = buf;
+                }
+                // The bytes stay reserved until released, so producers never overwrite them
+                int first = Math.min(length, data.length - offset);
+                out.write(data, offset, first);
+                if (first < length) {
+                    out.write(data, 0, length - first);
+                }
+                boolean empty;
+                synchronized (this) {
+                    if (closed) {
+                        draining = false;
+                        return;
+                    }
+                    release(length);
+                    empty = lineCount == 0;
+                    notifyAll();
+                }
+                if (empty) {
+                    out.flush(); // batch consecutive lines into one flush
+                }
+            }
+        } catch (IOException e) {
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        } finally {
+            synchronized (this) {
+                if (closed) draining = false;
+            }
+        }
+    }
+
+    // Graceful end: the sender writes and flushes what is queued, then closes the connection
+    public synchronized void finish() {
+        if (closed) return;
+        finishing = true;
+        if (!draining) {
+            closeLocked(); // nothing queued, and the last sender flushed before exiting
+        } else {
+            notifyAll();
+        }
+    }
+
+    // Immediate end: queued messages are discarded
+    public synchronized void close() {
+        closeLocked();
+    }
+
+    private void closeLocked() {
+        if (closed) return;
+        closed = true;
+        lineCount = 0;
+        used = 0;
+        notifyAll();
+        try {
+            connection.close();
+        } catch (IOException e) {
+        }
+    }
+
+    // Queued payload plus line index, the memory the limits are checked against
+    private long heldBytes() {
+        return used + (long) lineCount * LINE_OVERHEAD;
+    }
+
+    private int findQueued(Object coalesceKey) {
+        for (int i = 0; i < lineCount; i++) {
+            int line = (lineHead + i) & (lineKey.length - 1);
+            if (lineKey[line] == coalesceKey) return line;
+        }
+        return -1;
+    }
+
+    private void addLine(int offset, int length, Object coalesceKey) {
+        if (lineCount == lineKey.length) {
+            resizeLines(lineKey.length * 2);
+        }
+        int line = (lineHead + lineCount) & (lineKey.length - 1);
+        lineStart[line] = offset;
+        lineLength[line] = length;
+        lineKey[line] = coalesceKey;
+        lineCount++;
+    }
+
+    private void pollLine() {
+        lineKey[lineHead] = null;
+        lineHead = (lineHead + 1) & (lineKey.length - 1);
+        lineCount--;
+    }
+
+    // Frees the oldest length bytes once they have been written (or skipped)
+    private void release(int length) {
+        start = wrap(start + length);
+        used -= length;
+    }
+
+    private void copyIn(byte[] bytes, int offset, int length) {
+        int first = Math.min(length, buf.length - offset);
+        System.arraycopy(bytes, 0, buf, offset, first);
+        System.arraycopy(bytes, first, buf, 0, length - first);
+    }
+
+    private int wrap(int offset) {
+        return offset >= buf.length ? offset - buf.length : offset;
+    }
+
+    // Doubles the buffer until needed bytes fit, moving queued bytes to the front
+    private void grow(int needed) {
+        int capacity = buf.length;
+        while (capacity < needed) {
+            capacity = Math.min(capacity * 2, MAX_BYTES);
+        }
+        byte[] bigger = new byte[capacity];
+        int first = Math.min(used, buf.length - start);
+        System.arraycopy(buf, start, bigger, 0, first);
+        System.arraycopy(buf, 0, bigger, first, used - first);
+        for (int i = 0; i < lineCount; i++) {
+            int line = (lineHead + i) & (lineKey.length - 1);
+            int offset = lineStart[line] - start;
+            lineStart[line] = offset < 0 ? offset + buf.length : offset;
+        }
+        // A line being written keeps its reference to the old buffer, which is no longer modified
+        buf = bigger;
+        start = 0;
+    }
+
+    // Gives back memory after a burst; only called when nothing is queued or being written
+    private void shrink() {
+        if (buf.length > INITIAL_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        start = 0;
+        if (lineKey.length > INITIAL_LINES) {
+            resizeLines(INITIAL_LINES);
+        }
+    }
+
+    private void resizeLines(int capacity) {
+        int[] starts = new int[capacity];
+        int[] lengths = new int[capacity];
+        Object[] keys = new Object[capacity];
+        for (int i = 0; i < lineCount; i++) {
+            int line = (lineHead + i) & (lineKey.length - 1);
+            starts[i] = lineStart[line];
+            lengths[i] = lineLength[line];
+            keys[i] = lineKey[line];
+        }
+        lineStart = starts;
+        lineLength = lengths;
+        lineKey = keys;
+        lineHead = 0;
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.demo.server;
+
+import org.example.demo.Game;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Directory of all players' farms.
+ * Each username gets a compact int id the first time it logs in. A name lookup
+ * is a single ConcurrentHashMap get that yields both the id and the farm; a
+ * lookup by id goes to a striped open-addressing table (int keys, no boxing)
+ * and takes no lock. Ids key everything that belongs to a player rather than
+ * to a name: the handler's own farm after LOGIN/RESUME and session tokens.
+ */
+public class PlayerDirectory {
+
+    private static final int STRIPES = 16; // power of two; ids are spread round-robin over stripes
+    private static final int STRIPE_SHIFT = Integer.numberOfTrailingZeros(STRIPES);
+    private static final int INITIAL_CAPACITY = 16; // per stripe, power of two
+    private static final int NO_KEY = -1;
+
+    private static final class Entry {
+        final int id;
+        final Game game;
+
+        Entry(int id, Game game) {
+            this.id = id;
+            this.game = game;
+        }
+    }
+
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(0);
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public PlayerDirectory() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Returns the player's id, creating an empty farm on first login.
+    // computeIfAbsent only locks the username's bin, so unrelated logins don't wait on each other.
+    public int register(String username) {
+        return byName.computeIfAbsent(username, name -> {
+            int id = nextId.getAndIncrement();
+            Game game = new Game(name);
+            stripeFor(id).put(id, game);
+            return new Entry(id, game);
+        }).id;
+    }
+
+    public Game get(int id) {
+        return id < 0 ? null : stripeFor(id).get(id);
+    }
+
+    public Game get(String username) {
+        Entry entry = byName.get(username);
+        return entry == null ? null : entry.game;
+    }
+
+    private Stripe stripeFor(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    // Linear probing over parallel key/value arrays. Writers lock the stripe;
+    // readers don't, see get().
+    private static final class Stripe {
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        private int size;
+
+        // Lock-free: the value is published with a volatile write before its key,
+        // and a resized table only becomes visible once fully built. A reader that
+        // sees the key but not yet the value, or misses entirely, retries under the lock.
+        Game get(int id) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+                int key = t.keys[i];
+                if (key == id) {
+                    Game game = t.values.get(i);
+                    return game != null ? game : lockedGet(id);
+                }
+                if (key == NO_KEY) return lockedGet(id);
+            }
+        }
+
+        private synchronized Game lockedGet(int id) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+                int key = t.keys[i];
+                if (key == id) return t.values.get(i);
+                if (key == NO_KEY) return null;
+            }
+        }
+
+        synchronized void put(int id, Game game) {
+            Table t = table;
+            if ((size + 1) * 4 > t.keys.length * 3) { // keep load factor <= 0.75
+                t = resize(t);
+            }
+            if (t.insert(id, game)) {
+                size++;
+            }
+        }
+
+        private Table resize(Table old) {
+            Table bigger = new Table(old.keys.length * 2);
+            for (int i = 0; i < old.keys.length; i++) {
+                if (old.keys[i] != NO_KEY) {
+                    bigger.insert(old.keys[i], old.values.get(i));
+                }
+            }
+            table = bigger;
+            return bigger;
+        }
+
+        // Ids within a stripe are consecutive after dropping the stripe bits, so they fill slots densely
+        private static int slot(int id, int mask) {
+            return (id >>> STRIPE_SHIFT) & mask;
+        }
+    }
+
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Game> values;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            Arrays.fill(keys, NO_KEY);
+            values = new AtomicReferenceArray<>(capacity);
+        }
+
+        // Returns true if the key was new
+        boolean insert(int id, Game game) {
+            int mask = keys.length - 1;
+            for (int i = Stripe.slot(id, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == NO_KEY || keys[i] == id) {
+                    boolean added = keys[i] == NO_KEY;
+                    values.set(i, game); // value first, so a reader that sees the key can verify it
+                    keys[i] = id;
+                    return added;
+                }
+            }
+        }
+    }
+}
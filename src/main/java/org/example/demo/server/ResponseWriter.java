@@ -0,0 +1,154 @@
+package org.example.demo.server;
+
+import org.example.demo.Game;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds response lines in a reusable byte buffer.
+ * Fixed text comes from pre-encoded templates (see {@link #encode}) and numbers
+ * are written digit by digit, so common responses are sent without creating
+ * Strings or going through a charset encoder. Each {@link #endLine()} hands the
+ * finished line to the connection's {@link OutboundQueue}.
+ */
+public class ResponseWriter {
+
+    private static final byte[] STATE = encode("STATE ");
+    private static final byte[][] PLOT_STATES = new byte[Game.PlotState.values().length][];
+
+    static {
+        for (Game.PlotState state : Game.PlotState.values()) {
+            PLOT_STATES[state.ordinal()] = encode(state.name() + ":");
+        }
+    }
+
+    private final OutboundQueue queue;
+    private final Game.Snapshot snapshot = new Game.Snapshot();
+    private byte[] buf = new byte[1024];
+    private int length;
+    // Status word of the first line since resetOutcome(), for profiling events
+    private String outcome;
+
+    public ResponseWriter(OutboundQueue queue) {
+        this.queue = queue;
+    }
+
+    public static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Starts a response, prefixed with "#<tag> " when the command was tagged
+    public ResponseWriter begin(int tag) {
+        if (tag != CommandReader.NO_TAG) {
+            write((byte) '#');
+            write(tag);
+            write((byte) ' ');
+        }
+        return this;
+    }
+
+    public ResponseWriter write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    public ResponseWriter write(byte b) {
+        ensureCapacity(1);
+        buf[length++] = b;
+        return this;
+    }
+
+    public ResponseWriter write(long value) {
+        if (value == Long.MIN_VALUE) {
+            return write(encode(Long.toString(value)));
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) digits++;
+        for (int i = length + digits - 1; i >= length; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    // Allocates; for rare, dynamic text such as exception messages
+    public ResponseWriter write(String text) {
+        return write(encode(text));
+    }
+
+    // The only STATE encoder. Format: STATE COINS|STATE:YIELD,STATE:YIELD...|VERSION
+    public void writeState(int tag, Game game) throws IOException {
+        game.snapshot(snapshot);
+        begin(tag).write(STATE).write(snapshot.coins).write((byte) '|');
+        for (int i = 0; i < snapshot.states.length; i++) {
+            if (i > 0) write((byte) ',');
+            write(PLOT_STATES[snapshot.states[i].ordinal()]).write(snapshot.yields[i]);
+        }
+        write((byte) '|').write(snapshot.version);
+        // A STATE of this farm still waiting to be sent is superseded by this one (tag included)
+        endLine(game);
+    }
+
+    public void resetOutcome() {
+        outcome = null;
+    }
+
+    // SUCCESS, FAIL, ERROR, STATE or SESSION; null if nothing was written
+    public String outcome() {
+        return outcome;
+    }
+
+    public void endLine() throws IOException {
+        endLine(null);
+    }
+
+    // Lines with the same non-null key replace each other while still queued (used for STATE per farm)
+    public void endLine(Object coalesceKey) throws IOException {
+        write((byte) '\n');
+        int n = length;
+        length = 0;
+        if (outcome == null) {
+            outcome = classify(n);
+        }
+        if (!queue.enqueue(buf, n, coalesceKey)) {
+            throw new IOException("Connection closed by outbound queue");
+        }
+    }
+
+    private String classify(int n) {
+        int i = 0;
+        if (n > 0 && buf[0] == '#') { // skip the request tag
+            while (i < n && buf[i] != ' ') i++;
+            i++;
+        }
+        if (i + 1 >= n) return null;
+        switch (buf[i]) {
+            case 'E': return "ERROR";
+            case 'F': return "FAIL";
+            case 'S':
+                switch (buf[i + 1]) {
+                    case 'U': return "SUCCESS";
+                    case 'T': return "STATE";
+                    case 'E': return "SESSION";
+                    default: return null;
+                }
+            default: return null;
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(length + extra, buf.length * 2));
+        }
+    }
+}
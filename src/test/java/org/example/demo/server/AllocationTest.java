@@ -0,0 +1,116 @@
+package org.example.demo.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a real ClientHandler over a stub socket and checks that, once the JIT
+ * has warmed up, handling commands does not allocate. The thread's allocation
+ * counter is read inside the input stream, i.e. on the handler thread itself.
+ */
+class AllocationTest {
+
+    private static final byte[] LOGIN = "LOGIN alice\n".getBytes(StandardCharsets.UTF_8);
+    // QUERY, QUERY <friend>, malformed PLANT, out-of-range PLANT, tagged QUERY, PING
+    private static final byte[] COMMANDS = "QUERY\nQUERY bob\nPLANT x 1\nPLANT 9 9 #3\nQUERY #4\nPING\n".getBytes(StandardCharsets.UTF_8);
+    private static final int COMMANDS_PER_BLOCK = 6;
+    // Until C2 has compiled the handler, the JFR event objects are really allocated
+    private static final int WARMUP_BLOCKS = 200_000;
+    private static final int MEASURED_BLOCKS = 20_000;
+
+    // Serves LOGIN, then one block of commands per read; measures the measured blocks, then reports end of stream
+    private static final class ScriptedInputStream extends InputStream {
+        private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private int reads;
+        private long allocatedBefore;
+        private long allocated = -1;
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int block = reads++;
+            if (block == 0) {
+                return copy(LOGIN, b, off);
+            }
+            if (block == 1 + WARMUP_BLOCKS) {
+                allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            if (block == 1 + WARMUP_BLOCKS + MEASURED_BLOCKS) {
+                allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+                return -1;
+            }
+            return copy(COMMANDS, b, off);
+        }
+
+        private static int copy(byte[] from, byte[] to, int off) {
+            System.arraycopy(from, 0, to, off, from.length);
+            return from.length;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public void write(int b) {
+            bytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes.addAndGet(len);
+        }
+    }
+
+    private static final class StubSocket extends Socket {
+        private final InputStream in;
+        private final OutputStream out;
+
+        StubSocket(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public synchronized void close() {
+        }
+    }
+
+    @Test
+    void handlingCommandsDoesNotAllocate() {
+        FarmServer server = new FarmServer();
+        server.login("bob");
+        ScriptedInputStream in = new ScriptedInputStream();
+        CountingOutputStream out = new CountingOutputStream();
+
+        new ClientHandler(new StubSocket(in, out), server).run();
+
+        long commands = (long) MEASURED_BLOCKS * COMMANDS_PER_BLOCK;
+        assertTrue(in.allocated >= 0, "handler stopped before the measured commands were read");
+        assertTrue(out.bytes.get() > 0, "no responses were written");
+        // Allow a stray allocation or two (e.g. a late JIT deoptimization), not one per command
+        assertTrue(in.allocated < commands / 10, in.allocated + " bytes allocated for " + commands + " commands");
+    }
+}
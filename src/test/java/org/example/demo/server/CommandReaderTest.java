@@ -0,0 +1,139 @@
+package org.example.demo.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandReaderTest {
+
+    private static CommandReader reader(String input) {
+        return new CommandReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void parsesOpcodeAndArguments() throws IOException {
+        CommandReader in = reader("PLANT 1 2\n");
+        assertTrue(in.next());
+        assertEquals(Opcode.PLANT, in.opcode());
+        assertNull(in.lineError());
+        assertEquals(2, in.argCount());
+        assertEquals(1, in.intArg(0));
+        assertEquals(2, in.intArg(1));
+        assertEquals(CommandReader.NO_TAG, in.tag());
+        assertFalse(in.next());
+    }
+
+    @Test
+    void opcodesAreCaseInsensitive() throws IOException {
+        CommandReader in = reader("query\nPiNg\n");
+        assertTrue(in.next());
+        assertEquals(Opcode.QUERY, in.opcode());
+        assertTrue(in.next());
+        assertEquals(Opcode.PING, in.opcode());
+    }
+
+    @Test
+    void handlesCrLfExtraSpacesAndMissingFinalNewline() throws IOException {
+        CommandReader in = reader("  HARVEST   3  0 \r\nLOGIN bob");
+        assertTrue(in.next());
+        assertEquals(Opcode.HARVEST, in.opcode());
+        assertEquals(3, in.intArg(0));
+        assertEquals(0, in.intArg(1));
+        assertTrue(in.next());
+        assertEquals(Opcode.LOGIN, in.opcode());
+        assertEquals("bob", in.stringArg(0));
+        assertFalse(in.next());
+    }
+
+    @Test
+    void emptyAndUnknownLines() throws IOException {
+        CommandReader in = reader("\nFLY 1 2\n");
+        assertTrue(in.next());
+        assertEquals(Opcode.UNKNOWN, in.opcode());
+        assertEquals(0, in.argCount());
+        assertTrue(in.next());
+        assertEquals(Opcode.UNKNOWN, in.opcode());
+        assertEquals(2, in.argCount());
+    }
+
+    @Test
+    void malformedNumbersAreInvalid() throws IOException {
+        CommandReader in = reader("PLANT x -1 1234567890\n");
+        assertTrue(in.next());
+        assertEquals(CommandReader.INVALID, in.intArg(0));
+        assertEquals(CommandReader.INVALID, in.intArg(1));
+        assertEquals(CommandReader.INVALID, in.intArg(2)); // more than 9 digits
+        assertEquals(CommandReader.INVALID, in.intArg(3)); // missing
+    }
+
+    @Test
+    void longArgAcceptsNegativeValues() throws IOException {
+        CommandReader in = reader("RESUME abc -1 42\nRESUME abc 1x\n");
+        assertTrue(in.next());
+        assertEquals(-1, in.longArg(1));
+        assertEquals(42, in.longArg(2));
+        assertTrue(in.next());
+        assertEquals(Long.MIN_VALUE, in.longArg(1));
+        assertEquals(Long.MIN_VALUE, in.longArg(2));
+    }
+
+    @Test
+    void parsesRequestTag() throws IOException {
+        CommandReader in = reader("PLANT 1 2 #17\nQUERY #3\nQUERY alice #0\n");
+        assertTrue(in.next());
+        assertEquals(17, in.tag());
+        assertEquals(2, in.argCount());
+        assertTrue(in.next());
+        assertEquals(3, in.tag());
+        assertEquals(0, in.argCount());
+        assertTrue(in.next());
+        assertEquals(0, in.tag());
+        assertEquals("alice", in.stringArg(0));
+    }
+
+    @Test
+    void invalidTagIsReported() throws IOException {
+        CommandReader in = reader("PLANT 1 2 #x\nPING #\n");
+        assertTrue(in.next());
+        assertEquals("Invalid request tag", in.lineError());
+        assertEquals(CommandReader.NO_TAG, in.tag());
+        assertTrue(in.next());
+        assertEquals("Invalid request tag", in.lineError());
+    }
+
+    @Test
+    void tooManyArguments() throws IOException {
+        CommandReader in = reader("STEAL bob 1 2 3 4\n");
+        assertTrue(in.next());
+        assertEquals("Too many arguments", in.lineError());
+    }
+
+    @Test
+    void overlongLineIsRejectedAndNextLineStillParses() throws IOException {
+        CommandReader in = reader("LOGIN " + "a".repeat(5000) + "\nPING #4\n");
+        assertTrue(in.next());
+        assertEquals("Line too long", in.lineError());
+        assertEquals(Opcode.UNKNOWN, in.opcode());
+        assertTrue(in.next());
+        assertNull(in.lineError());
+        assertEquals(Opcode.PING, in.opcode());
+        assertEquals(4, in.tag());
+    }
+
+    @Test
+    void argEqualsComparesBytes() throws IOException {
+        CommandReader in = reader("QUERY alice\n");
+        assertTrue(in.next());
+        assertTrue(in.argEquals(0, ResponseWriter.encode("alice")));
+        assertFalse(in.argEquals(0, ResponseWriter.encode("alic")));
+        assertFalse(in.argEquals(0, null));
+        assertFalse(in.argEquals(1, ResponseWriter.encode("alice")));
+    }
+}